@@ -18,7 +18,6 @@
 
 package net.openhft.chronicle.bytes;
 
-import net.openhft.chronicle.core.ReferenceCounter;
 import org.jetbrains.annotations.NotNull;
 
 import java.nio.BufferOverflowException;
@@ -31,7 +30,8 @@ import static net.openhft.chronicle.bytes.Accessor.byteArrayAccessor;
 import static net.openhft.chronicle.bytes.Accessor.uncheckedByteBufferAccessor;
 
 public abstract class AbstractBytes<Underlying> implements Bytes<Underlying> {
-    private final ReferenceCounter refCount = ReferenceCounter.onReleased(this::performRelease);
+    private RefCount refCount = RefCount.onReleased(this::released);
+    private final BytesLeakDetector.Tracker leakTracker = BytesLeakDetector.ENABLED ? BytesLeakDetector.track(this) : null;
 
     protected BytesStore<Bytes<Underlying>, Underlying> bytesStore = NoBytesStore.noBytesStore();
     long mark = -1;
@@ -42,6 +42,9 @@ public abstract class AbstractBytes<Underlying> implements Bytes<Underlying> {
     public AbstractBytes(@NotNull BytesStore<Bytes<Underlying>, Underlying> bytesStore) {
         this.bytesStore = bytesStore;
         bytesStore.reserve();
+        // views of a thread confined store are confined to the same thread.
+        if (bytesStore.isThreadConfined())
+            refCount = refCount.threadConfined();
         clear();
     }
 
@@ -134,6 +137,12 @@ public abstract class AbstractBytes<Underlying> implements Bytes<Underlying> {
         return this;
     }
 
+    private void released() {
+        if (leakTracker != null)
+            leakTracker.released();
+        performRelease();
+    }
+
     protected void performRelease() {
         this.bytesStore.release();
         this.bytesStore = NoBytesStore.noBytesStore();
@@ -263,6 +272,17 @@ public abstract class AbstractBytes<Underlying> implements Bytes<Underlying> {
         return refCount.get();
     }
 
+    @Override
+    public Bytes<Underlying> threadConfined() {
+        refCount = refCount.threadConfined();
+        return this;
+    }
+
+    @Override
+    public boolean isThreadConfined() {
+        return refCount.isThreadConfined();
+    }
+
     @Override
     public Bytes writeByte(long offset, byte i) {
         writeCheckOffset(offset, 1);
@@ -477,8 +497,7 @@ public abstract class AbstractBytes<Underlying> implements Bytes<Underlying> {
     @Override
     public Bytes<Underlying> write(BytesStore bytes, long offset, long length) {
         long targetOffset = writeOffsetPositionMoved(length);
-        Access.copy(bytes.access(), bytes.accessHandle(), bytes.accessOffset(offset),
-                access(), accessHandle(), accessOffset(targetOffset), length);
+        BytesUtil.copy(bytes, offset, access(), accessHandle(), accessOffset(targetOffset), length);
         return this;
     }
 
@@ -486,8 +505,7 @@ public abstract class AbstractBytes<Underlying> implements Bytes<Underlying> {
     public Bytes<Underlying> write(Bytes bytes, long offset, long length) {
         long write = min(remaining(), length);
         long targetOffset = writeOffsetPositionMoved(write);
-        Access.copy(bytes.access(), bytes.accessHandle(), bytes.accessOffset(offset),
-                access(), accessHandle(), accessOffset(targetOffset), write);
+        BytesUtil.copy(bytes, offset, access(), accessHandle(), accessOffset(targetOffset), write);
         return this;
     }
 
@@ -545,15 +563,18 @@ public abstract class AbstractBytes<Underlying> implements Bytes<Underlying> {
 
     @Override
     public int hashCode() {
-        return super.hashCode();
+        long h = hash(position(), BytesUtil.readableRemaining(this));
+        return (int) (h ^ (h >>> 32));
     }
 
     @Override
     public boolean equals(Object obj) {
         if (!(obj instanceof Bytes)) return false;
+        // its access() only covers one chunk
+        if (obj instanceof ChunkedBytes) return obj.equals(this);
         Bytes b2 = (Bytes) obj;
-        long remaining = remaining();
-        if (b2.remaining() != remaining) return false;
+        long remaining = BytesUtil.readableRemaining(this);
+        if (BytesUtil.readableRemaining(b2) != remaining) return false;
         return Access.equivalent(access(), accessHandle(), accessPositionOffset(),
                 b2.access(), b2.accessHandle(), b2.accessPositionOffset(), remaining);
     }
@@ -563,12 +584,6 @@ public abstract class AbstractBytes<Underlying> implements Bytes<Underlying> {
         return BytesUtil.toString(this);
     }
 
-    @Override
-    protected void finalize() throws Throwable {
-        super.finalize();
-        refCount.releaseAll();
-    }
-
     @Override
     public final Bytes mark() {
         mark = position;
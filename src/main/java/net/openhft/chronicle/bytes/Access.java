@@ -17,6 +17,7 @@
 package net.openhft.chronicle.bytes;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 public interface Access<T> extends ReadAccess<T>, WriteAccess<T> {
 
@@ -67,7 +68,54 @@ public interface Access<T> extends ReadAccess<T>, WriteAccess<T> {
     static <T, U> boolean equivalent(ReadAccess<T> access1, T handle1, long offset1,
                                      ReadAccess<U> access2, U handle2, long offset2,
                                      long len) {
-        return access1.compareTo(handle1, offset1, access2, handle2, offset2, len);
+        return mismatch(access1, handle1, offset1, access2, handle2, offset2, len) < 0;
+    }
+
+    /**
+     * @return the index of the first byte which differs from 0 to len - 1, or -1 if the ranges are the same.
+     */
+    static <T, U> long mismatch(ReadAccess<T> access1, T handle1, long offset1,
+                                ReadAccess<U> access2, U handle2, long offset2,
+                                long len) {
+        long i = 0;
+        if (access1 instanceof NativeAccess && access2 instanceof NativeAccess) {
+            for (; i <= len - 8; i += 8) {
+                long diff = NativeAccess.U.getLong(handle1, offset1 + i) ^ NativeAccess.U.getLong(handle2, offset2 + i);
+                if (diff != 0)
+                    return i + (NativeAccess.LITTLE_ENDIAN
+                            ? Long.numberOfTrailingZeros(diff)
+                            : Long.numberOfLeadingZeros(diff)) / 8;
+            }
+        } else {
+            // compare words as little endian so the first byte is in the lowest bits.
+            boolean swap1 = access1.byteOrder(handle1) != ByteOrder.LITTLE_ENDIAN;
+            boolean swap2 = access2.byteOrder(handle2) != ByteOrder.LITTLE_ENDIAN;
+            for (; i <= len - 8; i += 8) {
+                long l1 = access1.readLong(handle1, offset1 + i);
+                long l2 = access2.readLong(handle2, offset2 + i);
+                long diff = (swap1 ? Long.reverseBytes(l1) : l1) ^ (swap2 ? Long.reverseBytes(l2) : l2);
+                if (diff != 0)
+                    return i + Long.numberOfTrailingZeros(diff) / 8;
+            }
+        }
+        for (; i < len; i++)
+            if (access1.readByte(handle1, offset1 + i) != access2.readByte(handle2, offset2 + i))
+                return i;
+        return -1;
+    }
+
+    /**
+     * Compare the ranges as unsigned bytes, a range which is a prefix of the other comes first.
+     *
+     * @return negative, zero or positive as the first range is less than, equal to or greater than the second.
+     */
+    static <T, U> int compare(ReadAccess<T> access1, T handle1, long offset1, long len1,
+                              ReadAccess<U> access2, U handle2, long offset2, long len2) {
+        long i = mismatch(access1, handle1, offset1, access2, handle2, offset2, Math.min(len1, len2));
+        if (i < 0)
+            return Long.compare(len1, len2);
+        return Integer.compare(access1.readUnsignedByte(handle1, offset1 + i),
+                access2.readUnsignedByte(handle2, offset2 + i));
     }
 
     /**
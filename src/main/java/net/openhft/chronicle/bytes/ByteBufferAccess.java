@@ -16,9 +16,13 @@
 
 package net.openhft.chronicle.bytes;
 
+import sun.nio.ch.DirectBuffer;
+
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
+import static net.openhft.chronicle.bytes.NativeAccess.U;
+
 final class ByteBufferAccess implements Access<ByteBuffer> {
     public static final ByteBufferAccess INSTANCE = new ByteBufferAccess();
 
@@ -94,6 +98,66 @@ final class ByteBufferAccess implements Access<ByteBuffer> {
         buffer.putDouble((int) offset, d);
     }
 
+    @Override
+    @Deprecated
+    @SuppressWarnings("deprecation")
+    public <S> void writeFrom(
+            ByteBuffer buffer, long offset,
+            ReadAccess<S> sourceAccess, S source, long sourceOffset, long len) {
+        if (isNativeWritable(buffer, offset, len)) {
+            if (sourceAccess instanceof NativeAccess) {
+                NativeAccess.copyMemory(source, sourceOffset, nativeHandle(buffer), nativeOffset(buffer, offset), len);
+                return;
+            }
+            if (sourceAccess == this && isNativeReadable((ByteBuffer) source, sourceOffset, len)) {
+                ByteBuffer bb = (ByteBuffer) source;
+                NativeAccess.copyMemory(nativeHandle(bb), nativeOffset(bb, sourceOffset),
+                        nativeHandle(buffer), nativeOffset(buffer, offset), len);
+                return;
+            }
+        }
+        Access.super.writeFrom(buffer, offset, sourceAccess, source, sourceOffset, len);
+    }
+
+    @Override
+    public void writeBytes(ByteBuffer buffer, long offset, long len, byte b) {
+        if (isNativeWritable(buffer, offset, len))
+            U.setMemory(nativeHandle(buffer), nativeOffset(buffer, offset), len, b);
+        else
+            Access.super.writeBytes(buffer, offset, len, b);
+    }
+
+    @Override
+    public void zeroOut(ByteBuffer buffer, long offset, long len) {
+        if (isNativeWritable(buffer, offset, len))
+            U.setMemory(nativeHandle(buffer), nativeOffset(buffer, offset), len, (byte) 0);
+        else
+            Access.super.zeroOut(buffer, offset, len);
+    }
+
+    // whether the range can be read directly with NativeAccess, otherwise it is out of bounds or read only heap.
+    static boolean isNativeReadable(ByteBuffer buffer, long offset, long len) {
+        return (buffer.isDirect() || buffer.hasArray()) && inBounds(buffer, offset, len);
+    }
+
+    static boolean isNativeWritable(ByteBuffer buffer, long offset, long len) {
+        return !buffer.isReadOnly() && isNativeReadable(buffer, offset, len);
+    }
+
+    private static boolean inBounds(ByteBuffer buffer, long offset, long len) {
+        return offset >= 0 && len >= 0 && offset + len <= buffer.limit();
+    }
+
+    static byte[] nativeHandle(ByteBuffer buffer) {
+        return buffer.isDirect() ? null : buffer.array();
+    }
+
+    static long nativeOffset(ByteBuffer buffer, long offset) {
+        return buffer.isDirect()
+                ? ((DirectBuffer) buffer).address() + offset
+                : ArrayAccessors.BYTE_BASE + buffer.arrayOffset() + offset;
+    }
+
     @Override
     public ByteOrder byteOrder(ByteBuffer buffer) {
         return buffer.order();
@@ -35,6 +35,10 @@ public interface Bytes<Underlying> extends BytesStore<Bytes<Underlying>, Underly
         return NativeBytesStore.elasticByteBuffer().bytes();
     }
 
+    static Bytes<byte[]> elasticHeapBytes() {
+        return HeapBytes.heapBytes();
+    }
+
     static Bytes<ByteBuffer> wrap(ByteBuffer byteBuffer) {
         return BytesStore.wrap(byteBuffer)
                 .bytes(UnderflowMode.BOUNDED);
@@ -70,6 +74,27 @@ public interface Bytes<Underlying> extends BytesStore<Bytes<Underlying>, Underly
         return BytesUtil.toHexString(this, position(), remaining());
     }
 
+    /**
+     * @return the offset of the first b from position() to limit(), or -1 if not found.
+     */
+    default long indexOf(byte b) {
+        return indexOf(b, position(), limit());
+    }
+
+    /**
+     * @return the offset of the last b from position() to limit(), or -1 if not found.
+     */
+    default long lastIndexOf(byte b) {
+        return lastIndexOf(b, position(), limit());
+    }
+
+    /**
+     * @return the offset of the first occurrence of the pattern from position() to limit(), or -1 if not found.
+     */
+    default long indexOf(BytesStore pattern) {
+        return indexOf(pattern, position(), limit());
+    }
+
     long limit();
 
     Bytes<Underlying> position(long position);
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2015 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.bytes;
+
+import java.nio.ByteOrder;
+
+/**
+ * A 64-bit content hash using the xxHash64 algorithm, reading 32 bytes per round.
+ * <p>
+ * Values are read as little endian whatever the byte order of the access, so the same bytes hash the same in heap,
+ * native or mapped memory.
+ */
+public enum BytesHash {
+    ;
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    public static <T> long hash(ReadAccess<T> access, T handle, long offset, long len) {
+        return hash(access, handle, offset, len, 0L);
+    }
+
+    public static <T> long hash(ReadAccess<T> access, T handle, long offset, long len, long seed) {
+        boolean swap = access.byteOrder(handle) != ByteOrder.LITTLE_ENDIAN;
+        long end = offset + len;
+        long h;
+        if (len >= 32) {
+            long v1 = seed + PRIME1 + PRIME2;
+            long v2 = seed + PRIME2;
+            long v3 = seed;
+            long v4 = seed - PRIME1;
+            for (long limit = end - 32; offset <= limit; offset += 32) {
+                v1 = round(v1, readLong(access, handle, offset, swap));
+                v2 = round(v2, readLong(access, handle, offset + 8, swap));
+                v3 = round(v3, readLong(access, handle, offset + 16, swap));
+                v4 = round(v4, readLong(access, handle, offset + 24, swap));
+            }
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = merge(h, v1);
+            h = merge(h, v2);
+            h = merge(h, v3);
+            h = merge(h, v4);
+        } else {
+            h = seed + PRIME5;
+        }
+        h += len;
+
+        for (; offset <= end - 8; offset += 8) {
+            h ^= round(0, readLong(access, handle, offset, swap));
+            h = Long.rotateLeft(h, 27) * PRIME1 + PRIME4;
+        }
+        if (offset <= end - 4) {
+            int i = access.readInt(handle, offset);
+            if (swap)
+                i = Integer.reverseBytes(i);
+            h ^= (i & 0xFFFFFFFFL) * PRIME1;
+            h = Long.rotateLeft(h, 23) * PRIME2 + PRIME3;
+            offset += 4;
+        }
+        for (; offset < end; offset++) {
+            h ^= access.readUnsignedByte(handle, offset) * PRIME5;
+            h = Long.rotateLeft(h, 11) * PRIME1;
+        }
+
+        h ^= h >>> 33;
+        h *= PRIME2;
+        h ^= h >>> 29;
+        h *= PRIME3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    private static <T> long readLong(ReadAccess<T> access, T handle, long offset, boolean swap) {
+        long l = access.readLong(handle, offset);
+        return swap ? Long.reverseBytes(l) : l;
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * PRIME2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME1;
+    }
+
+    private static long merge(long h, long v) {
+        h ^= round(0, v);
+        return h * PRIME1 + PRIME4;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2015 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.bytes;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sun.misc.Cleaner;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opt-in detection of Bytes which are garbage collected without being released, enabled with
+ * -Dchronicle.bytes.leakDetection=true. The stack trace of where each leaked Bytes was created is logged.
+ * <p>
+ * This only reports leaks, Bytes must be released explicitly. The memory of a native store is still freed by its own
+ * Cleaner once no Bytes refers to it.
+ */
+final class BytesLeakDetector {
+    static final boolean ENABLED = Boolean.getBoolean("chronicle.bytes.leakDetection");
+    private static final Logger LOG = LoggerFactory.getLogger(BytesLeakDetector.class);
+    private static final LongAdder LEAKS = new LongAdder();
+
+    private BytesLeakDetector() {
+    }
+
+    static Tracker track(Object bytes) {
+        Tracker tracker = new Tracker(bytes.getClass().getName());
+        tracker.cleaner = Cleaner.create(bytes, tracker);
+        return tracker;
+    }
+
+    /**
+     * @return the number of Bytes collected without being released.
+     */
+    static long leaks() {
+        return LEAKS.sum();
+    }
+
+    // must not refer to the Bytes tracked.
+    static final class Tracker implements Runnable {
+        private final String type;
+        private final Throwable createdHere = new Throwable("created here");
+        private volatile boolean released = false;
+        private Cleaner cleaner;
+
+        Tracker(String type) {
+            this.type = type;
+        }
+
+        void released() {
+            released = true;
+            cleaner.clean();
+        }
+
+        @Override
+        public void run() {
+            if (released)
+                return;
+            LEAKS.increment();
+            LOG.warn(type + " was not released", createdHere);
+        }
+    }
+}
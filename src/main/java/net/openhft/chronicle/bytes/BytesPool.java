@@ -0,0 +1,220 @@
+/*
+ * Copyright 2015 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.bytes;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A pool of reusable elastic native Bytes by capacity class, so handling a message needn't allocate once the pool is
+ * warm.
+ * <p>
+ * Capacities are rounded up to a power of 2 between {@link #MIN_CAPACITY} and {@link #MAX_CAPACITY}. Returned Bytes
+ * go to a small cache for the returning thread, overflowing to a lock-free shared cache, and are released if both
+ * are full. Bytes returned by a thread other than the one which borrowed them go to the shared cache first, so a
+ * hand-off between threads doesn't strand them in the cache of a thread which never borrows. Bytes are cleared, but not zeroed, when returned. Larger capacities are not pooled.
+ * <pre>
+ * try (PooledBytes pb = pool.borrow(1024)) {
+ *     Bytes bytes = pb.bytes();
+ *     // use bytes
+ * }
+ * </pre>
+ */
+public class BytesPool {
+    public static final int MIN_CAPACITY = 64;
+    public static final int MAX_CAPACITY = 16 << 20;
+    static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_CAPACITY);
+    static final int SIZE_CLASSES = Integer.numberOfTrailingZeros(MAX_CAPACITY) - MIN_SHIFT + 1;
+    private static final BytesPool DEFAULT = new BytesPool(4, 16);
+
+    private final int threadCacheSize;
+    private final int sharedCacheSize;
+    private final ThreadLocal<ThreadCache> threadCaches;
+    private final AtomicReferenceArray<PooledBytes> shared;
+
+    private final LongAdder borrowed = new LongAdder();
+    private final LongAdder threadCacheHits = new LongAdder();
+    private final LongAdder sharedCacheHits = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+
+    /**
+     * @param threadCacheSize Bytes cached per capacity class per thread.
+     * @param sharedCacheSize Bytes cached per capacity class between all threads.
+     */
+    public BytesPool(int threadCacheSize, int sharedCacheSize) {
+        this.threadCacheSize = threadCacheSize;
+        this.sharedCacheSize = sharedCacheSize;
+        threadCaches = ThreadLocal.withInitial(() -> new ThreadCache(threadCacheSize));
+        shared = new AtomicReferenceArray<>(SIZE_CLASSES * sharedCacheSize);
+    }
+
+    public static BytesPool defaultPool() {
+        return DEFAULT;
+    }
+
+    // the smallest class at least capacity.
+    static int sizeClass(long capacity) {
+        if (capacity <= MIN_CAPACITY)
+            return 0;
+        return 64 - Long.numberOfLeadingZeros(capacity - 1) - MIN_SHIFT;
+    }
+
+    static long classCapacity(int sizeClass) {
+        return 1L << (sizeClass + MIN_SHIFT);
+    }
+
+    /**
+     * @param capacity the real capacity needed, the Bytes are elastic so can grow beyond this.
+     * @return cleared Bytes to return with {@link PooledBytes#close()}
+     */
+    public PooledBytes borrow(long capacity) {
+        if (capacity < 0)
+            throw new IllegalArgumentException("capacity: " + capacity);
+        if (capacity > MAX_CAPACITY)
+            return new PooledBytes(null, NativeBytes.nativeBytes(capacity));
+        borrowed.increment();
+        int sizeClass = sizeClass(capacity);
+        ThreadCache cache = threadCaches.get();
+        PooledBytes pb = cache.poll(sizeClass);
+        if (pb != null) {
+            threadCacheHits.increment();
+        } else if ((pb = pollShared(sizeClass)) != null) {
+            sharedCacheHits.increment();
+        } else {
+            created.increment();
+            return new PooledBytes(this, NativeBytes.nativeBytes(classCapacity(sizeClass)));
+        }
+        pb.borrowed();
+        return pb;
+    }
+
+    private PooledBytes pollShared(int sizeClass) {
+        for (int i = sizeClass * sharedCacheSize, end = i + sharedCacheSize; i < end; i++) {
+            if (shared.get(i) == null)
+                continue;
+            PooledBytes pb = shared.getAndSet(i, null);
+            if (pb != null)
+                return pb;
+        }
+        return null;
+    }
+
+    void returnBytes(PooledBytes pb) {
+        Bytes<Void> bytes = pb.bytes();
+        bytes.clear();
+        long realCapacity = bytes.realCapacity();
+        if (realCapacity >= MIN_CAPACITY) {
+            // Bytes which grew are pooled for the largest class they can hold.
+            int sizeClass = Math.min(SIZE_CLASSES - 1, 63 - Long.numberOfLeadingZeros(realCapacity) - MIN_SHIFT);
+            if (realCapacity <= MAX_CAPACITY << 1 && offer(sizeClass, pb))
+                return;
+        }
+        discarded.increment();
+        bytes.release();
+    }
+
+    private boolean offer(int sizeClass, PooledBytes pb) {
+        if (pb.owner() == Thread.currentThread())
+            return threadCaches.get().offer(sizeClass, pb) || offerShared(sizeClass, pb);
+        return offerShared(sizeClass, pb) || threadCaches.get().offer(sizeClass, pb);
+    }
+
+    private boolean offerShared(int sizeClass, PooledBytes pb) {
+        for (int i = sizeClass * sharedCacheSize, end = i + sharedCacheSize; i < end; i++) {
+            if (shared.get(i) == null && shared.compareAndSet(i, null, pb))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of pooled Bytes borrowed.
+     */
+    public long borrowed() {
+        return borrowed.sum();
+    }
+
+    /**
+     * @return the number of Bytes borrowed from the cache of the borrowing thread.
+     */
+    public long threadCacheHits() {
+        return threadCacheHits.sum();
+    }
+
+    /**
+     * @return the number of Bytes borrowed from the shared cache.
+     */
+    public long sharedCacheHits() {
+        return sharedCacheHits.sum();
+    }
+
+    /**
+     * @return the number of Bytes created because none were cached.
+     */
+    public long created() {
+        return created.sum();
+    }
+
+    /**
+     * @return the number of Bytes released because the caches were full.
+     */
+    public long discarded() {
+        return discarded.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "BytesPool{" +
+                "borrowed=" + borrowed() +
+                ", threadCacheHits=" + threadCacheHits() +
+                ", sharedCacheHits=" + sharedCacheHits() +
+                ", created=" + created() +
+                ", discarded=" + discarded() +
+                '}';
+    }
+
+    static final class ThreadCache {
+        private final PooledBytes[][] cached;
+        private final int[] counts = new int[SIZE_CLASSES];
+
+        ThreadCache(int size) {
+            cached = new PooledBytes[SIZE_CLASSES][size];
+        }
+
+        PooledBytes poll(int sizeClass) {
+            int count = counts[sizeClass];
+            if (count == 0)
+                return null;
+            counts[sizeClass] = --count;
+            PooledBytes pb = cached[sizeClass][count];
+            cached[sizeClass][count] = null;
+            return pb;
+        }
+
+        boolean offer(int sizeClass, PooledBytes pb) {
+            int count = counts[sizeClass];
+            if (count == cached[sizeClass].length)
+                return false;
+            cached[sizeClass][count] = pb;
+            counts[sizeClass] = count + 1;
+            return true;
+        }
+    }
+}
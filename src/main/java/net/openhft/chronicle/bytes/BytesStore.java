@@ -100,6 +100,25 @@ public interface BytesStore<B extends BytesStore<B, Underlying>, Underlying>
         return this;
     }
 
+    /**
+     * Make reserve() and release() plain field updates which may only be used by the current thread, checked when
+     * assertions are enabled. Bytes created from a thread confined store are also thread confined. This should be
+     * called before this is shared.
+     * <p>
+     * Stores which are always shared, such as the chunks of a MappedFile, stay atomic and return themselves
+     * unchanged, so use {@link #isThreadConfined()} to tell whether this took effect.
+     *
+     * @return this
+     */
+    @SuppressWarnings("unchecked")
+    default B threadConfined() {
+        return (B) this;
+    }
+
+    default boolean isThreadConfined() {
+        return false;
+    }
+
     /**
      * Use this test to determine if an offset is considered safe.
      */
@@ -124,6 +143,56 @@ public interface BytesStore<B extends BytesStore<B, Underlying>, Underlying>
                 store.access(), store.accessHandle(), store.accessOffset(store.start()), copy);
     }
 
+    /**
+     * @return a 64-bit hash of the bytes in the range, the same for the same bytes in any kind of store.
+     * @see BytesHash
+     */
+    default long hash(long offset, long length) {
+        return BytesHash.hash(access(), accessHandle(), accessOffset(offset), length);
+    }
+
+    /**
+     * @return the index of the first byte which differs from 0 to length - 1, or -1 if the ranges are the same.
+     * @throws BufferUnderflowException if either range is outside the memory allocated.
+     */
+    default long mismatch(long offset, BytesStore other, long otherOffset, long length) {
+        return BytesUtil.mismatch(this, offset, other, otherOffset, length);
+    }
+
+    /**
+     * Compare the ranges as unsigned bytes, a range which is a prefix of the other comes first.
+     *
+     * @return negative, zero or positive as this range is less than, equal to or greater than the other.
+     * @throws BufferUnderflowException if either range is outside the memory allocated.
+     */
+    default int compare(long offset, long length, BytesStore other, long otherOffset, long otherLength) {
+        return BytesUtil.compare(this, offset, length, other, otherOffset, otherLength);
+    }
+
+    /**
+     * Search 8 bytes at a time.
+     *
+     * @return the offset of the first b from fromOffset up to toOffset, or -1 if not found.
+     */
+    default long indexOf(byte b, long fromOffset, long toOffset) {
+        return BytesUtil.indexOf(this, b, fromOffset, toOffset);
+    }
+
+    /**
+     * @return the offset of the last b from fromOffset up to toOffset, or -1 if not found.
+     */
+    default long lastIndexOf(byte b, long fromOffset, long toOffset) {
+        return BytesUtil.lastIndexOf(this, b, fromOffset, toOffset);
+    }
+
+    /**
+     * @param pattern the bytes to find, from position() to limit() for Bytes.
+     * @return the offset of the first occurrence of the pattern from fromOffset up to toOffset, or -1 if not found.
+     */
+    default long indexOf(BytesStore pattern, long fromOffset, long toOffset) {
+        return BytesUtil.indexOf(this, pattern, fromOffset, toOffset);
+    }
+
     // this "needless" override is needed for better erasure while accessing raw Bytes/BytesStore
     @Override
     Access<Underlying> access();
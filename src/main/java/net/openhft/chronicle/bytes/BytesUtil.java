@@ -24,6 +24,7 @@ import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
 import java.io.UTFDataFormatException;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
@@ -135,6 +136,21 @@ public enum BytesUtil {
     }
 
     public static long findUTFLength(@NotNull CharSequence str) {
+        return findUTFLength(latin1(str), str);
+    }
+
+    // the Latin-1 bytes of a compact String, or null to use charAt().
+    static byte[] latin1(CharSequence str) {
+        return str instanceof String && CompactStringAccessor.isLatin1((String) str)
+                ? CompactStringAccessor.INSTANCE.handle((String) str)
+                : null;
+    }
+
+    static long findUTFLength(byte[] latin1, @NotNull CharSequence str) {
+        if (latin1 != null) {
+            // Latin-1 characters from 0x80 need 2 bytes.
+            return latin1.length + countNegative(latin1);
+        }
         long utflen = 0;/* use charAt instead of copying String to char array */
         for (int i = 0, strlen = str.length(); i < strlen; i++) {
             char c = str.charAt(i);
@@ -156,8 +172,16 @@ public enum BytesUtil {
             ((NativeBytes) bytes).write((NativeBytes) str, offset, length);
             return;
         }
-        int i;
-        for (i = 0; i < length; i++) {
+        appendUTF(bytes, latin1(str), str, offset, length);
+    }
+
+    static void appendUTF(StreamingDataOutput bytes, byte[] latin1, @NotNull CharSequence str, int offset, int length) {
+        int i = 0;
+        if (latin1 != null) {
+            i = asciiLength(latin1, offset, length);
+            bytes.write(latin1, offset, i);
+        }
+        for (; i < length; i++) {
             char c = str.charAt(offset + i);
             if (c > 0x007F)
                 break;
@@ -172,8 +196,18 @@ public enum BytesUtil {
 
     public static <T> void appendUTF(WriteAccess<T> access, T handle, long offset,
                                      @NotNull CharSequence str, int strOff, int length) {
-        int i;
-        for (i = 0; i < length; i++) {
+        appendUTF(access, handle, offset, latin1(str), str, strOff, length);
+    }
+
+    static <T> void appendUTF(WriteAccess<T> access, T handle, long offset,
+                              byte[] latin1, @NotNull CharSequence str, int strOff, int length) {
+        int i = 0;
+        if (latin1 != null) {
+            i = asciiLength(latin1, strOff, length);
+            Access.copy(NativeAccess.instance(), latin1, ArrayAccessors.BYTE_BASE + strOff, access, handle, offset, i);
+            offset += i;
+        }
+        for (; i < length; i++) {
             char c = str.charAt(strOff + i);
             if (c > 0x007F)
                 break;
@@ -187,6 +221,28 @@ public enum BytesUtil {
         }
     }
 
+    // the number of bytes from offset before one of 0x80 or more, checking 8 bytes at a time.
+    static int asciiLength(byte[] value, int offset, int length) {
+        int i = 0;
+        for (; i <= length - 8; i += 8)
+            if ((NativeAccess.U.getLong(value, ArrayAccessors.BYTE_BASE + offset + i) & 0x8080808080808080L) != 0)
+                break;
+        for (; i < length; i++)
+            if (value[offset + i] < 0)
+                break;
+        return i;
+    }
+
+    static int countNegative(byte[] value) {
+        int count = 0, i = 0;
+        for (; i <= value.length - 8; i += 8)
+            count += Long.bitCount(NativeAccess.U.getLong(value, ArrayAccessors.BYTE_BASE + i) & 0x8080808080808080L);
+        for (; i < value.length; i++)
+            if (value[i] < 0)
+                count++;
+        return count;
+    }
+
     public static void appendUTF(StreamingDataOutput bytes, int c) {
         if (c <= 0x007F) {
             bytes.writeByte((byte) c);
@@ -1157,4 +1213,141 @@ public enum BytesUtil {
             throw new AssertionError(e);
         }
     }
+
+    static long mismatch(BytesStore store, long offset, BytesStore other, long otherOffset, long length) {
+        checkRange(store, offset, length);
+        checkRange(other, otherOffset, length);
+        return Access.mismatch(access(store), handle(store), accessOffset(store, offset),
+                access(other), handle(other), accessOffset(other, otherOffset), length);
+    }
+
+    static int compare(BytesStore store, long offset, long length, BytesStore other, long otherOffset, long otherLength) {
+        checkRange(store, offset, length);
+        checkRange(other, otherOffset, otherLength);
+        return Access.compare(access(store), handle(store), accessOffset(store, offset), length,
+                access(other), handle(other), accessOffset(other, otherOffset), otherLength);
+    }
+
+    static long indexOf(BytesStore store, byte b, long from, long to) {
+        to = searchLimit(store, to);
+        if (from >= to)
+            return -1;
+        long i = indexOf(access(store), handle(store), accessOffset(store, from), to - from, b);
+        return i < 0 ? -1 : from + i;
+    }
+
+    static long lastIndexOf(BytesStore store, byte b, long from, long to) {
+        to = searchLimit(store, to);
+        if (from >= to)
+            return -1;
+        long i = lastIndexOf(access(store), handle(store), accessOffset(store, from), to - from, b);
+        return i < 0 ? -1 : from + i;
+    }
+
+    static long indexOf(BytesStore store, BytesStore pattern, long from, long to) {
+        long patternOffset, patternLength;
+        if (pattern instanceof Bytes) {
+            patternOffset = ((Bytes) pattern).position();
+            patternLength = readableRemaining((Bytes) pattern);
+        } else {
+            patternOffset = pattern.start();
+            patternLength = pattern.realCapacity() - patternOffset;
+        }
+        to = searchLimit(store, to);
+        if (patternLength == 0)
+            return from <= to ? from : -1;
+        byte first = pattern.readByte(patternOffset);
+        for (long last = to - patternLength; from <= last; from++) {
+            from = indexOf(store, first, from, last + 1);
+            if (from < 0)
+                return -1;
+            if (mismatch(store, from + 1, pattern, patternOffset + 1, patternLength - 1) < 0)
+                return from;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the bytes from position() to limit() which have memory allocated, as the limit of elastic Bytes which
+     * haven't been flipped is the capacity(). Chunked Bytes map more memory as needed.
+     */
+    static long readableRemaining(Bytes bytes) {
+        long limit = bytes instanceof ChunkedBytes ? bytes.limit() : Math.min(bytes.limit(), bytes.realCapacity());
+        return Math.max(0, limit - bytes.position());
+    }
+
+    // don't read past the memory allocated, except for chunked Bytes which map more as needed.
+    private static long searchLimit(BytesStore store, long to) {
+        return store instanceof ChunkedBytes ? to : Math.min(to, store.realCapacity());
+    }
+
+    private static void checkRange(BytesStore store, long offset, long length) {
+        if (offset < store.start() || length < 0 || length > searchLimit(store, offset + length) - offset)
+            throw new BufferUnderflowException();
+    }
+
+    private static <T> long indexOf(ReadAccess<T> access, T handle, long offset, long len, byte b) {
+        long pattern = (b & 0xFFL) * 0x0101010101010101L;
+        boolean nativeAccess = access instanceof NativeAccess;
+        boolean swap = access.byteOrder(handle) != ByteOrder.LITTLE_ENDIAN;
+        long i = 0;
+        for (; i <= len - 8; i += 8) {
+            long word = nativeAccess ? NativeAccess.U.getLong(handle, offset + i) : access.readLong(handle, offset + i);
+            long found = zeroBytes((swap ? Long.reverseBytes(word) : word) ^ pattern);
+            if (found != 0)
+                return i + Long.numberOfTrailingZeros(found) / 8;
+        }
+        for (; i < len; i++)
+            if (access.readByte(handle, offset + i) == b)
+                return i;
+        return -1;
+    }
+
+    private static <T> long lastIndexOf(ReadAccess<T> access, T handle, long offset, long len, byte b) {
+        long pattern = (b & 0xFFL) * 0x0101010101010101L;
+        boolean nativeAccess = access instanceof NativeAccess;
+        boolean swap = access.byteOrder(handle) != ByteOrder.LITTLE_ENDIAN;
+        long i = len;
+        while (i >= 8) {
+            i -= 8;
+            long word = nativeAccess ? NativeAccess.U.getLong(handle, offset + i) : access.readLong(handle, offset + i);
+            long found = zeroBytes((swap ? Long.reverseBytes(word) : word) ^ pattern);
+            if (found != 0)
+                return i + 7 - Long.numberOfLeadingZeros(found) / 8;
+        }
+        while (--i >= 0)
+            if (access.readByte(handle, offset + i) == b)
+                return i;
+        return -1;
+    }
+
+    // the top bit of each byte is set if that byte is zero. Unlike (x - 0x01..) & ~x & 0x80.. there are no false
+    // positives above a zero byte, so it is exact for both the first and the last zero byte.
+    private static long zeroBytes(long x) {
+        long t = (x & 0x7F7F7F7F7F7F7F7FL) + 0x7F7F7F7F7F7F7F7FL;
+        return ~(t | x | 0x7F7F7F7F7F7F7F7FL);
+    }
+
+    // the access() of chunked Bytes only covers one chunk so copy out of it a chunk at a time.
+    static <T> void copy(BytesStore source, long sourceOffset, Access<T> access, T handle, long targetOffset,
+                         long length) {
+        if (source instanceof ChunkedBytes)
+            ((ChunkedBytes) source).copyOut(sourceOffset, access, handle, targetOffset, length);
+        else
+            Access.copy(source.access(), source.accessHandle(), source.accessOffset(sourceOffset),
+                    access, handle, targetOffset, length);
+    }
+
+    // the access() of chunked Bytes only covers one chunk so read a value at a time.
+    private static ReadAccess access(BytesStore store) {
+        return store instanceof ChunkedBytes ? Access.checkedBytesStoreAccess() : store.access();
+    }
+
+    private static Object handle(BytesStore store) {
+        return store instanceof ChunkedBytes ? store : store.accessHandle();
+    }
+
+    private static long accessOffset(BytesStore store, long offset) {
+        return store instanceof ChunkedBytes ? offset : store.accessOffset(offset);
+    }
 }
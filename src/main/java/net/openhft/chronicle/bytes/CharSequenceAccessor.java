@@ -25,7 +25,8 @@ abstract class CharSequenceAccessor
     static  {
         initAccessor:
         {
-            if (System.getProperty("java.vm.name").contains("HotSpot")) {
+            // Java 9+ has a byte[] value, see CompactStringAccessor
+            if (System.getProperty("java.vm.name").contains("HotSpot") && !CompactStringAccessor.COMPACT_STRINGS) {
                 if (System.getProperty("java.version").compareTo("1.7.0_06") >= 0) {
                     stringAccessor = HotSpotStringAccessor.INSTANCE;
                     break initAccessor;
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2015 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.bytes;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import static java.lang.Math.min;
+import static net.openhft.chronicle.bytes.Accessor.byteArrayAccessor;
+import static net.openhft.chronicle.bytes.Accessor.uncheckedByteBufferAccessor;
+
+/**
+ * Bytes over a series of stores, each of which covers a range of offsets. writeCheckOffset(offset, 0) and
+ * readCheckOffset(offset, 1) make the store containing offset the current bytesStore, and bulk operations are split
+ * at the end of each store so they can be longer than one store.
+ */
+abstract class ChunkedBytes extends AbstractBytes<Void> {
+
+    ChunkedBytes(BytesStore bytesStore) {
+        super(bytesStore);
+    }
+
+    @Override
+    public BytesStore<Bytes<Void>, Void> copy() {
+        long remaining = remaining();
+        NativeBytes<Void> copy = NativeBytes.nativeBytes(remaining);
+        copyOut(position(), NativeAccess.instance(), null, copy.address(), remaining);
+        copy.position(remaining);
+        copy.flip();
+        return copy;
+    }
+
+    @Override
+    public Bytes<Void> write(long offsetInRDO, byte[] bytes, int offset, int length) {
+        copyIn(offsetInRDO, byteArrayAccessor(), bytes, offset, length);
+        return this;
+    }
+
+    @Override
+    public Bytes<Void> write(long offsetInRDO, ByteBuffer bytes, int offset, int length) {
+        copyIn(offsetInRDO, uncheckedByteBufferAccessor(bytes), bytes, offset, length);
+        return this;
+    }
+
+    @Override
+    public Bytes<Void> write(long offsetInRDO, Bytes bytes, long offset, long length) {
+        copyIn(offsetInRDO, bytes, offset, length);
+        return this;
+    }
+
+    @Override
+    public Bytes<Void> write(byte[] bytes, int offset, int length) {
+        copyIn(writePosition(length), byteArrayAccessor(), bytes, offset, length);
+        return this;
+    }
+
+    @Override
+    public Bytes<Void> write(ByteBuffer buffer) {
+        int length = buffer.remaining();
+        copyIn(writePosition(length), uncheckedByteBufferAccessor(buffer), buffer, buffer.position(), length);
+        return this;
+    }
+
+    @Override
+    public Bytes<Void> write(BytesStore bytes, long offset, long length) {
+        copyIn(writePosition(length), bytes, offset, length);
+        return this;
+    }
+
+    @Override
+    public Bytes<Void> write(Bytes bytes, long offset, long length) {
+        long write = min(remaining(), length);
+        copyIn(writePosition(write), bytes, offset, write);
+        return this;
+    }
+
+    @Override
+    public <T> Bytes<Void> write(ReadAccess<T> access, T handle, long offset, long len) {
+        copyIn(writePosition(len), access, handle, offset, len);
+        return this;
+    }
+
+    @Override
+    public void read(byte[] bytes) {
+        if (bytes.length > remaining())
+            throw new BufferUnderflowException();
+        copyOut(readPosition(bytes.length), byteArrayAccessor(), bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void read(ByteBuffer buffer) {
+        int read = (int) min(remaining(), buffer.remaining());
+        copyOut(readPosition(read), uncheckedByteBufferAccessor(buffer), buffer, buffer.position(), read);
+        buffer.position(buffer.position() + read);
+    }
+
+    @Override
+    public int peekUnsignedByte() {
+        return remaining() > 0 ? readUnsignedByte(position()) : -1;
+    }
+
+    @Override
+    public int peakVolatileInt() {
+        return readVolatileInt(position());
+    }
+
+    @Override
+    public void nativeRead(long address, long size) {
+        copyOut(readPosition(size), NativeAccess.instance(), null, address, size);
+    }
+
+    @Override
+    public void nativeWrite(long address, long size) {
+        copyIn(writePosition(size), NativeAccess.instance(), null, address, size);
+    }
+
+    @Override
+    public void nativeRead(long position, long address, long size) {
+        copyOut(position, NativeAccess.instance(), null, address, size);
+    }
+
+    @Override
+    public void nativeWrite(long address, long position, long size) {
+        copyIn(position, NativeAccess.instance(), null, address, size);
+    }
+
+    // access() only covers the current store so compare a value at a time.
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof Bytes)) return false;
+        Bytes b2 = (Bytes) obj;
+        long remaining = BytesUtil.readableRemaining(this);
+        if (BytesUtil.readableRemaining(b2) != remaining) return false;
+        long position = position(), position2 = b2.position();
+        long i = 0;
+        for (; i < remaining - 7; i += 8)
+            if (readLong(position + i) != b2.readLong(position2 + i))
+                return false;
+        for (; i < remaining; i++)
+            if (readByte(position + i) != b2.readByte(position2 + i))
+                return false;
+        return true;
+    }
+
+    @Override
+    public long hash(long offset, long length) {
+        return BytesHash.hash(Access.checkedBytesStoreAccess(), this, offset, length);
+    }
+
+    long writePosition(long length) {
+        long position = position();
+        if (position + length > limit())
+            throw new BufferOverflowException();
+        position(position + length);
+        return position;
+    }
+
+    long readPosition(long length) {
+        long position = position();
+        position(position + length);
+        return position;
+    }
+
+    <S, T> void copyIn(long offset, Accessor.Full<S, T> accessor, S source, long index, long length) {
+        copyIn(offset, accessor.access(source), accessor.handle(source), accessor.offset(source, index), length);
+    }
+
+    <T> void copyIn(long offset, ReadAccess<T> access, T handle, long sourceOffset, long length) {
+        while (length > 0) {
+            writeCheckOffset(offset, 0);
+            long len = min(length, bytesStore.capacity() - offset);
+            long address = bytesStore.accessOffset(offset);
+            if (access instanceof NativeAccess)
+                NativeAccess.U.copyMemory(handle, sourceOffset, null, address, len);
+            else
+                Access.copy(access, handle, sourceOffset, NativeAccess.instance(), null, address, len);
+            offset += len;
+            sourceOffset += len;
+            length -= len;
+        }
+    }
+
+    void copyIn(long offset, BytesStore source, long sourceOffset, long length) {
+        if (!(source instanceof ChunkedBytes)) {
+            copyIn(offset, source.access(), source.accessHandle(), source.accessOffset(sourceOffset), length);
+            return;
+        }
+        // the source's access() only covers its current chunk, so copy out of it into each of our chunks.
+        ChunkedBytes chunked = (ChunkedBytes) source;
+        while (length > 0) {
+            writeCheckOffset(offset, 0);
+            long len = min(length, bytesStore.capacity() - offset);
+            chunked.copyOut(sourceOffset, NativeAccess.instance(), null, bytesStore.accessOffset(offset), len);
+            offset += len;
+            sourceOffset += len;
+            length -= len;
+        }
+    }
+
+    <S, T> void copyOut(long offset, Accessor.Full<S, T> accessor, S target, long index, long length) {
+        copyOut(offset, accessor.access(target), accessor.handle(target), accessor.offset(target, index), length);
+    }
+
+    <T> void copyOut(long offset, Access<T> access, T handle, long targetOffset, long length) {
+        while (length > 0) {
+            readCheckOffset(offset, 1);
+            long len = min(length, bytesStore.capacity() - offset);
+            long address = bytesStore.accessOffset(offset);
+            if (access instanceof NativeAccess)
+                NativeAccess.U.copyMemory(null, address, handle, targetOffset, len);
+            else
+                Access.copy(NativeAccess.instance(), null, address, access, handle, targetOffset, len);
+            offset += len;
+            targetOffset += len;
+            length -= len;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2014 Higher Frequency Trading http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.bytes;
+
+import java.lang.reflect.Field;
+
+/**
+ * Accesses the {@code byte[]} value of a String on Java 9+ with compact strings. The bytes are only the characters
+ * when {@link #isLatin1(String)}, otherwise they are UTF-16 and the String should be read a char at a time.
+ */
+final class CompactStringAccessor implements Accessor.Read<String, byte[]> {
+    public static final CompactStringAccessor INSTANCE = new CompactStringAccessor();
+
+    static final boolean COMPACT_STRINGS;
+    private static final long valueOffset;
+    private static final long coderOffset;
+
+    static {
+        boolean compact = false;
+        long value = -1, coder = -1;
+        try {
+            Field valueField = String.class.getDeclaredField("value");
+            if (valueField.getType() == byte[].class) {
+                Field coderField = String.class.getDeclaredField("coder");
+                value = NativeAccess.U.objectFieldOffset(valueField);
+                coder = NativeAccess.U.objectFieldOffset(coderField);
+                compact = true;
+            }
+        } catch (Exception e) {
+            // not a layout we know so use charAt()
+        }
+        COMPACT_STRINGS = compact;
+        valueOffset = value;
+        coderOffset = coder;
+    }
+
+    private CompactStringAccessor() {}
+
+    /**
+     * @return whether the String has a byte[] of Latin-1 characters, always false without compact strings.
+     */
+    static boolean isLatin1(String s) {
+        // LATIN1 is 0, UTF16 is 1 and with -XX:-CompactStrings every String is UTF16.
+        return COMPACT_STRINGS && NativeAccess.U.getByte(s, coderOffset) == 0;
+    }
+
+    @Override
+    public ReadAccess<byte[]> access(String source) {
+        return NativeAccess.instance();
+    }
+
+    @Override
+    public byte[] handle(String source) {
+        return (byte[]) NativeAccess.U.getObject(source, valueOffset);
+    }
+
+    @Override
+    public long offset(String source, long index) {
+        return ArrayAccessors.BYTE_BASE + index;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2015 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.bytes;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.util.Arrays;
+
+import static java.lang.Math.min;
+import static net.openhft.chronicle.bytes.ArrayAccessors.BYTE_BASE;
+
+/**
+ * Elastic Bytes over a byte[] which is replaced by a larger one as needed. For small, short lived messages this
+ * avoids native memory, its Cleaner and its accounting.
+ */
+public class HeapBytes extends ZeroedBytes<byte[]> {
+    // the largest array most JVMs will allocate.
+    static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+    static final int MIN_CAPACITY = 64;
+
+    HeapBytes(BytesStore store) {
+        super(store, UnderflowMode.PADDED);
+    }
+
+    public static HeapBytes heapBytes() {
+        return heapBytes(MIN_CAPACITY);
+    }
+
+    public static HeapBytes heapBytes(int initialCapacity) {
+        return new HeapBytes(HeapBytesStore.wrap(new byte[initialCapacity]));
+    }
+
+    @Override
+    public long capacity() {
+        return MAX_CAPACITY;
+    }
+
+    @Override
+    public boolean isElastic() {
+        return true;
+    }
+
+    @Override
+    protected void writeCheckOffset(long offset, long adding) {
+        if (offset + adding > bytesStore.capacity())
+            resize(offset + adding);
+    }
+
+    @Override
+    public void ensureCapacity(long size) {
+        writeCheckOffset(size, 0);
+    }
+
+    private void resize(long endOfBuffer) {
+        if (endOfBuffer < 0)
+            throw new IllegalArgumentException();
+        if (endOfBuffer > MAX_CAPACITY)
+            throw new BufferOverflowException();
+        // grow by 50% as NativeBytes does.
+        long size = min(MAX_CAPACITY, Math.max(MIN_CAPACITY, Math.max(endOfBuffer, bytesStore.capacity() * 3 / 2)));
+        byte[] bytes = Arrays.copyOf(array(), (int) size);
+        BytesStore store = HeapBytesStore.wrap(bytes);
+        bytesStore.release();
+        bytesStore = store;
+    }
+
+    private byte[] array() {
+        return (byte[]) bytesStore.accessHandle();
+    }
+
+    @Override
+    public Bytes<byte[]> write(long offsetInRDO, byte[] bytes, int offset, int length) {
+        writeCheckOffset(offsetInRDO, length);
+        System.arraycopy(bytes, offset, array(), (int) offsetInRDO, length);
+        return this;
+    }
+
+    @Override
+    public Bytes<byte[]> write(byte[] bytes, int offset, int length) {
+        long position = writeOffsetPositionMoved(length);
+        System.arraycopy(bytes, offset, array(), (int) position, length);
+        return this;
+    }
+
+    @Override
+    public Bytes<byte[]> write(BytesStore bytes, long offset, long length) {
+        if (bytes.access() instanceof NativeAccess && !(bytes instanceof ChunkedBytes)) {
+            long position = writeOffsetPositionMoved(length);
+            NativeAccess.U.copyMemory(bytes.accessHandle(), bytes.accessOffset(offset), array(), BYTE_BASE + position, length);
+            return this;
+        }
+        return super.write(bytes, offset, length);
+    }
+
+    @Override
+    public Bytes<byte[]> write(Bytes bytes, long offset, long length) {
+        if (bytes.access() instanceof NativeAccess && !(bytes instanceof ChunkedBytes)) {
+            long write = min(remaining(), length);
+            long position = writeOffsetPositionMoved(write);
+            NativeAccess.U.copyMemory(bytes.accessHandle(), bytes.accessOffset(offset), array(), BYTE_BASE + position, write);
+            return this;
+        }
+        return super.write(bytes, offset, length);
+    }
+
+    @Override
+    public void read(byte[] bytes) {
+        if (bytes.length > remaining())
+            throw new BufferUnderflowException();
+        long position = readOffsetPositionMoved(bytes.length);
+        System.arraycopy(array(), (int) position, bytes, 0, bytes.length);
+    }
+
+    @Override
+    public BytesStore<Bytes<byte[]>, byte[]> copy() {
+        long remaining = remaining();
+        HeapBytes copy = heapBytes((int) remaining);
+        copy.write(array(), (int) position(), (int) remaining);
+        copy.flip();
+        return copy;
+    }
+}
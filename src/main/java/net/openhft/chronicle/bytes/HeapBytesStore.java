@@ -25,7 +25,6 @@ import sun.nio.ch.DirectBuffer;
 
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
-import java.util.concurrent.atomic.AtomicLong;
 
 import static net.openhft.chronicle.bytes.Access.nativeAccess;
 
@@ -34,7 +33,8 @@ public class HeapBytesStore<Underlying>
     private static final Memory MEMORY = OS.memory();
     final Object realUnderlyingObject;
     final int dataOffset, capacity;
-    private final AtomicLong refCount = new AtomicLong(1);
+    // nothing to free, heap memory is left to the GC.
+    private RefCount refCount = RefCount.onReleased(() -> {});
     private final Underlying underlyingObject;
 
     private HeapBytesStore(ByteBuffer byteBuffer) {
@@ -45,6 +45,18 @@ public class HeapBytesStore<Underlying>
         this.capacity = byteBuffer.capacity();
     }
 
+    private HeapBytesStore(byte[] bytes) {
+        //noinspection unchecked
+        this.underlyingObject = (Underlying) bytes;
+        this.realUnderlyingObject = bytes;
+        this.dataOffset = Unsafe.ARRAY_BYTE_BASE_OFFSET;
+        this.capacity = bytes.length;
+    }
+
+    static HeapBytesStore<byte[]> wrap(byte[] bytes) {
+        return new HeapBytesStore<>(bytes);
+    }
+
     static HeapBytesStore<ByteBuffer> wrap(ByteBuffer bb) {
         return new HeapBytesStore<>(bb);
     }
@@ -56,12 +68,12 @@ public class HeapBytesStore<Underlying>
 
     @Override
     public void reserve() {
-        refCount.incrementAndGet();
+        refCount.reserve();
     }
 
     @Override
     public void release() {
-        refCount.decrementAndGet();
+        refCount.release();
     }
 
     @Override
@@ -69,6 +81,17 @@ public class HeapBytesStore<Underlying>
         return refCount.get();
     }
 
+    @Override
+    public HeapBytesStore<Underlying> threadConfined() {
+        refCount = refCount.threadConfined();
+        return this;
+    }
+
+    @Override
+    public boolean isThreadConfined() {
+        return refCount.isThreadConfined();
+    }
+
     @Override
     public long capacity() {
         return capacity;
@@ -201,7 +224,7 @@ public class HeapBytesStore<Underlying>
     @Override
     public HeapBytesStore<Underlying> write(
             long offsetInRDO, byte[] bytes, int offset, int length) {
-        checkOffset(offset, length);
+        checkOffset(offsetInRDO, length);
         MEMORY.copyMemory(
                 bytes, offset, realUnderlyingObject, this.dataOffset + offsetInRDO, length);
         return this;
@@ -210,9 +233,9 @@ public class HeapBytesStore<Underlying>
     @Override
     public HeapBytesStore<Underlying> write(
             long offsetInRDO, ByteBuffer bytes, int offset, int length) {
-        checkOffset(offset, length);
+        checkOffset(offsetInRDO, length);
         if (bytes.isDirect()) {
-            MEMORY.copyMemory(((DirectBuffer) bytes).address(), realUnderlyingObject,
+            MEMORY.copyMemory(((DirectBuffer) bytes).address() + offset, realUnderlyingObject,
                     this.dataOffset + offsetInRDO, length);
 
         } else {
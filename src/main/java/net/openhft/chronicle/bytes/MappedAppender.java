@@ -0,0 +1,113 @@
+/*
+ * Copyright 2015 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.bytes;
+
+import net.openhft.chronicle.core.util.Closeable;
+
+import java.io.IOException;
+
+/**
+ * Appends length prefixed records to a MappedFile shared by any number of threads and processes without a lock.
+ * <p>
+ * The file starts with a header holding the next free position.  A writer claims a region by adding the record's
+ * length to it, copies the data in and then publishes the record by writing its length with an ordered write.  A
+ * reader which sees a length of 0 knows the record at that position is still being written, so it never sees a
+ * torn record.
+ * <p>
+ * An appender is a cursor so it should be used by one thread at a time, use one appender per writing thread.
+ */
+public class MappedAppender implements Closeable {
+    /**
+     * offset in the header of the next position to write to.
+     */
+    static final long WRITE_POSITION = 0;
+    /**
+     * records start after the header, which is a cache line to avoid false sharing with the first record.
+     */
+    public static final long DATA_START = 64;
+    static final int LENGTH_SIZE = 4;
+
+    private final MappedBytesStore header;
+    private final MappedBytes bytes;
+
+    MappedAppender(MappedFile mappedFile) throws IOException {
+        if (mappedFile.isReadOnly())
+            throw new IllegalStateException("Cannot append to a read only file " + mappedFile.name());
+        this.header = mappedFile.acquireByteStore(WRITE_POSITION);
+        // a new file, the first appender in any process sets the start.
+        header.compareAndSwapLong(WRITE_POSITION, 0L, DATA_START);
+        this.bytes = new MappedBytes(mappedFile, false);
+    }
+
+    /**
+     * @return the size of a record including its length and padding so the next length is aligned.
+     */
+    static long recordSize(long length) {
+        return (LENGTH_SIZE + length + 3) & ~3L;
+    }
+
+    public long append(byte[] data) {
+        return append(data, 0, data.length);
+    }
+
+    /**
+     * @return the position of the record appended.
+     */
+    public long append(byte[] data, int offset, int length) {
+        long position = claim(length);
+        bytes.write(position + LENGTH_SIZE, data, offset, length);
+        bytes.writeOrderedInt(position, length);
+        return position;
+    }
+
+    /**
+     * Append the remaining bytes of <code>data</code> without changing its position.
+     *
+     * @return the position of the record appended.
+     */
+    public long append(Bytes data) {
+        long length = data.remaining();
+        if (length > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Record too long " + length);
+        long position = claim(length);
+        bytes.write(position + LENGTH_SIZE, data, data.position(), length);
+        bytes.writeOrderedInt(position, (int) length);
+        return position;
+    }
+
+    private long claim(long length) {
+        if (length <= 0)
+            throw new IllegalArgumentException("length: " + length);
+        long size = recordSize(length);
+        return header.addAndGetLong(WRITE_POSITION, size) - size;
+    }
+
+    /**
+     * @return the position the next record will be claimed from.
+     */
+    public long writePosition() {
+        return header.readVolatileLong(WRITE_POSITION);
+    }
+
+    @Override
+    public void close() {
+        bytes.release();
+        header.release();
+    }
+}
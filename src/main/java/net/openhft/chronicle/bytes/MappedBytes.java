@@ -20,20 +20,39 @@ package net.openhft.chronicle.bytes;
 
 import net.openhft.chronicle.core.OS;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ReadOnlyBufferException;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Created by peter.lawrey on 24/02/15.
  */
-public class MappedBytes extends AbstractBytes<Void> {
+public class MappedBytes extends ChunkedBytes {
     private final MappedFile mappedFile;
+    private final boolean readOnly;
+    private final boolean closeOnRelease;
+    private long premapAt = Long.MAX_VALUE;
 
     // assume the mapped file is reserved already.
     MappedBytes(MappedFile mappedFile) {
+        this(mappedFile, true);
+    }
+
+    /**
+     * @param closeOnRelease if true, releasing these bytes closes the file, otherwise the file is reserved for the
+     *                       life of these bytes, so it can be shared with other cursors.
+     */
+    MappedBytes(MappedFile mappedFile, boolean closeOnRelease) {
         super(NoBytesStore.noBytesStore());
         this.mappedFile = mappedFile;
+        this.readOnly = mappedFile.isReadOnly();
+        this.closeOnRelease = closeOnRelease;
+        if (!closeOnRelease)
+            mappedFile.reserve();
         clear();
     }
 
@@ -47,9 +66,8 @@ public class MappedBytes extends AbstractBytes<Void> {
         return bytes;
     }
 
-    @Override
-    public BytesStore<Bytes<Void>, Void> copy() {
-        return NativeBytes.copyOf(this);
+    public static MappedBytes readOnlyMappedBytes(File file, long chunkSize) throws FileNotFoundException {
+        return new MappedBytes(MappedFile.readOnly(file, chunkSize));
     }
 
     @Override
@@ -74,12 +92,21 @@ public class MappedBytes extends AbstractBytes<Void> {
 
     @Override
     protected void readCheckOffset(long offset, long adding) {
-        checkOffset(offset);
+        if (readOnly)
+            checkReadOnlyOffset(offset, adding);
+        else
+            checkOffset(offset);
     }
 
     @Override
     protected void writeCheckOffset(long offset, long adding) {
+        if (readOnly)
+            throw new ReadOnlyBufferException();
         checkOffset(offset);
+        if (offset >= premapAt) {
+            premapAt = Long.MAX_VALUE;
+            mappedFile.premapAfter(offset);
+        }
     }
 
     private void checkOffset(long offset) {
@@ -87,6 +114,7 @@ public class MappedBytes extends AbstractBytes<Void> {
             BytesStore oldBS = bytesStore;
             try {
                 bytesStore = mappedFile.acquireByteStore(offset);
+                premapAt = mappedFile.premapPosition(offset);
                 oldBS.release();
             } catch (IOException e) {
                 throw new IORuntimeException(e);
@@ -94,6 +122,35 @@ public class MappedBytes extends AbstractBytes<Void> {
         }
     }
 
+    /**
+     * Request the range is made durable, see {@link MappedFile#syncAsync(long, long)}
+     */
+    public CompletableFuture<Void> syncAsync(long position, long length) {
+        return mappedFile.syncAsync(position, length);
+    }
+
+    /**
+     * Block until the range is durable, see {@link MappedFile#sync(long, long)}
+     */
+    public void sync(long position, long length) throws IOException {
+        mappedFile.sync(position, length);
+    }
+
+    // the last chunk of a read only file is only mapped as far as the end of the file.
+    private void checkReadOnlyOffset(long offset, long adding) {
+        if (bytesStore.inStore(offset) && offset + adding <= bytesStore.capacity())
+            return;
+        BytesStore oldBS = bytesStore;
+        try {
+            bytesStore = mappedFile.acquireByteStore(offset, adding);
+            oldBS.release();
+        } catch (EOFException e) {
+            throw new BufferUnderflowException();
+        } catch (IOException e) {
+            throw new IORuntimeException(e);
+        }
+    }
+
     @Override
     public long start() {
         return 0L;
@@ -107,7 +164,10 @@ public class MappedBytes extends AbstractBytes<Void> {
     @Override
     protected void performRelease() {
         super.performRelease();
-        mappedFile.close();
+        if (closeOnRelease)
+            mappedFile.close();
+        else
+            mappedFile.release();
     }
 
     @Override
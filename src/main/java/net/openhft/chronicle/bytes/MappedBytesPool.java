@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.bytes;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock free pool of MappedBytes cursors for one MappedFile.
+ * <p>
+ * Unlike a cursor per thread, the number of cursors is bounded by how many are in use at once rather than the number
+ * of threads, which matters with many short lived or virtual threads.  A pooled cursor keeps the reservation of the
+ * last chunk it used, so the next borrower usually doesn't need to acquire a chunk from the MappedFile.
+ */
+public class MappedBytesPool {
+    private final MappedFile mappedFile;
+    private final AtomicReferenceArray<MappedBytes> pool;
+    private volatile boolean closed;
+
+    MappedBytesPool(MappedFile mappedFile, int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity: " + capacity);
+        this.mappedFile = mappedFile;
+        this.pool = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * @return a cursor with its position at the start and limit at the capacity, which must be returned with
+     * {@link #returnBytes(MappedBytes)} or released.
+     */
+    public MappedBytes borrow() {
+        int length = pool.length();
+        int start = startIndex(length);
+        for (int i = 0; i < length; i++) {
+            int index = (start + i) % length;
+            if (pool.get(index) == null)
+                continue;
+            MappedBytes bytes = pool.getAndSet(index, null);
+            if (bytes != null)
+                return bytes;
+        }
+        return new MappedBytes(mappedFile, false);
+    }
+
+    /**
+     * Return a cursor to the pool, or release it if the pool is full or the file has been closed.
+     */
+    public void returnBytes(MappedBytes bytes) {
+        if (isClosed()) {
+            bytes.release();
+            return;
+        }
+        bytes.clear();
+        int length = pool.length();
+        int start = startIndex(length);
+        for (int i = 0; i < length; i++) {
+            int index = (start + i) % length;
+            if (pool.get(index) == null && pool.compareAndSet(index, null, bytes)) {
+                // close() may have emptied the pool before this was added.
+                if (isClosed() && pool.compareAndSet(index, bytes, null))
+                    bytes.release();
+                return;
+            }
+        }
+        bytes.release();
+    }
+
+    private boolean isClosed() {
+        return closed || mappedFile.isClosed();
+    }
+
+    /**
+     * @return the number of cursors currently pooled.
+     */
+    public int pooled() {
+        int count = 0;
+        for (int i = 0; i < pool.length(); i++)
+            if (pool.get(i) != null)
+                count++;
+        return count;
+    }
+
+    // spread threads across the slots to reduce contention.
+    private static int startIndex(int length) {
+        return (int) (Thread.currentThread().getId() % length);
+    }
+
+    void close() {
+        closed = true;
+        for (int i = 0; i < pool.length(); i++) {
+            MappedBytes bytes = pool.getAndSet(i, null);
+            if (bytes != null)
+                bytes.release();
+        }
+    }
+}
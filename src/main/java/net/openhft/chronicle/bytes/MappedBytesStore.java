@@ -18,17 +18,70 @@
 
 package net.openhft.chronicle.bytes;
 
+import net.openhft.chronicle.bytes.OffHeapAccounting.MemoryType;
 import net.openhft.chronicle.core.OS;
 import net.openhft.chronicle.core.ReferenceCounted;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 public class MappedBytesStore extends NativeBytesStore {
+    // set by the release which takes the count to 0, far enough below 0 that reserves which fail can't bring it back.
+    private static final long RELEASED = Long.MIN_VALUE / 2;
+
+    // reserving is a single fetch-add, only the last release needs a CAS.
+    private final AtomicLong refCount = new AtomicLong(1);
     private final long start;
     private final long safeLimit;
+    // approximate time this chunk was last acquired from the MappedFile, used to choose chunks to unmap.
+    long lastAcquired = System.nanoTime();
 
     protected MappedBytesStore(ReferenceCounted owner, long start, long address, long capacity, long safeCapacity) {
-        super(address, start + capacity, new OS.Unmapper(address, capacity, owner), false);
+        super(address, start + capacity, OffHeapAccounting.freeing(MemoryType.MAPPED, capacity, new OS.Unmapper(address, capacity, owner)), false);
         this.start = start;
         this.safeLimit = start + safeCapacity;
+        OffHeapAccounting.allocated(MemoryType.MAPPED, capacity);
+        trackingId = OffHeapAccounting.track(this, MemoryType.MAPPED, capacity);
+    }
+
+    @Override
+    public void reserve() throws IllegalStateException {
+        if (!tryReserve())
+            throw new IllegalStateException("Released");
+    }
+
+    /**
+     * Reserve unless the store has already been released, never incrementing a count which has reached 0.
+     */
+    @Override
+    public boolean tryReserve() {
+        // a reserve between the last release and its CAS to RELEASED takes the store back.
+        return refCount.getAndIncrement() >= 0;
+    }
+
+    @Override
+    public void release() throws IllegalStateException {
+        long count = refCount.decrementAndGet();
+        if (count < 0)
+            throw new IllegalStateException("Released");
+        // if the CAS fails a reserve has taken the store back and its release will release it.
+        if (count == 0 && refCount.compareAndSet(0, RELEASED))
+            performRelease();
+    }
+
+    @Override
+    public long refCount() {
+        return Math.max(0, refCount.get());
+    }
+
+    /**
+     * Chunks are shared by every cursor of a MappedFile and are released by it on eviction and close from any thread,
+     * so they cannot be confined and the count stays atomic.
+     *
+     * @return this, unchanged
+     */
+    @Override
+    public NativeBytesStore threadConfined() {
+        return this;
     }
 
     @Override
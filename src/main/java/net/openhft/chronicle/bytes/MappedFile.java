@@ -22,18 +22,51 @@ import net.openhft.chronicle.core.OS;
 import net.openhft.chronicle.core.ReferenceCounted;
 import net.openhft.chronicle.core.ReferenceCounter;
 
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileDescriptor;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public class MappedFile implements ReferenceCounted {
+    private static final int INITIAL_CHUNKS = 16;
+    // msync of part of a mapping, or null if it isn't accessible in which case the whole file is forced.
+    private static final Method FORCE0;
+
+    static {
+        Method force0 = null;
+        try {
+            force0 = MappedByteBuffer.class.getDeclaredMethod("force0", FileDescriptor.class, long.class, long.class);
+            force0.setAccessible(true);
+        } catch (Exception e) {
+            // use FileChannel.force()
+        }
+        FORCE0 = force0;
+    }
+
     private final ReferenceCounter refCount = ReferenceCounter.onReleased(this::performRelease);
 
     private final File file;
@@ -41,15 +74,42 @@ public class MappedFile implements ReferenceCounted {
     private final FileChannel fileChannel;
     private final long chunkSize;
     private final long overlapSize;
+    private final boolean readOnly;
 
-    private final List<WeakReference<MappedBytesStore>> stores = new ArrayList<>();
+    // lookups are lock free, only mapping a new chunk or growing the table holds the storesLock.
+    private final Object storesLock = new Object();
+    private volatile AtomicReferenceArray<WeakReference<MappedBytesStore>> stores = new AtomicReferenceArray<>(INITIAL_CHUNKS);
+    private volatile int storesSize = 0;
+    // optional cap on the number of chunks mapped, the least recently acquired chunk not in use is unmapped.
+    private volatile int maxLiveChunks = Integer.MAX_VALUE;
+    private volatile long evictedChunks = 0;
+    private volatile long syncedChunks = 0;
     private final AtomicBoolean closed = new AtomicBoolean();
     private final ThreadLocal<WeakReference<Bytes>> threadLocalBytes = new ThreadLocal<>();
+    private volatile MappedBytesPool bytesPool;
     private final long capacity;
 
+    // optional background mapping of the next chunk.
+    private final AtomicInteger premapRequested = new AtomicInteger(-1);
+    private volatile long premapThreshold = Long.MAX_VALUE;
+    private volatile ExecutorService premapper;
+    private MappedBytesStore premapped;
+
+    // group commit of durability requests.
+    private final ConcurrentLinkedQueue<SyncRequest> syncRequests = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean syncScheduled = new AtomicBoolean();
+    private volatile ExecutorService syncer;
+    // an empty mapping to call force0 on, only used by the syncer.
+    private MappedByteBuffer forceTarget;
+
     MappedFile(File file, long chunkSize, long overlapSize) throws FileNotFoundException {
+        this(file, chunkSize, overlapSize, false);
+    }
+
+    MappedFile(File file, long chunkSize, long overlapSize, boolean readOnly) throws FileNotFoundException {
         this.file = file;
-        this.raf = new RandomAccessFile(file, "rw");
+        this.readOnly = readOnly;
+        this.raf = new RandomAccessFile(file, readOnly ? "r" : "rw");
         this.fileChannel = raf.getChannel();
         this.chunkSize = OS.mapAlign(chunkSize);
         this.overlapSize = overlapSize == 0 ? 0 : OS.mapAlign(overlapSize);
@@ -72,21 +132,54 @@ public class MappedFile implements ReferenceCounted {
         return new MappedFile(file, chunkSize, overlapSize);
     }
 
+    /**
+     * A MappedFile for processes which only read.  The file is mapped READ_ONLY, never grown and never locked, and
+     * chunks are only mapped up to the length of the file at the time.
+     */
+    public static MappedFile readOnly(File file, long chunkSize) throws FileNotFoundException {
+        return new MappedFile(file, chunkSize, OS.pageSize(), true);
+    }
+
+    boolean isClosed() {
+        return closed.get();
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
     public MappedBytesStore acquireByteStore(long position) throws IOException {
+        return acquireByteStore(position, 1);
+    }
+
+    /**
+     * @param position  to acquire the chunk for
+     * @param minLength the bytes from position which must be mapped.  This only matters for a read only file where
+     *                  the last chunk may be mapped only in part.
+     * @throws EOFException if the file is read only and shorter than position + minLength
+     */
+    MappedBytesStore acquireByteStore(long position, long minLength) throws IOException {
         if (closed.get())
             throw new IOException("Closed");
         int chunk = (int) (position / chunkSize);
-        synchronized (stores) {
-            while (stores.size() <= chunk) {
-                stores.add(null);
-            }
-            WeakReference<MappedBytesStore> mbsRef = stores.get(chunk);
-            if (mbsRef != null) {
-                MappedBytesStore mbs = mbsRef.get();
-                if (mbs != null && mbs.tryReserve()) {
-                    return mbs;
-                }
-            }
+        MappedBytesStore mbs = tryAcquire(chunk, position + minLength);
+        if (mbs != null)
+            return mbs;
+
+        synchronized (storesLock) {
+            if (closed.get())
+                throw new IOException("Closed");
+            // another thread might have mapped it while we were waiting.
+            mbs = tryAcquire(chunk, position + minLength);
+            if (mbs != null)
+                return mbs;
+
+            if (maxLiveChunks < Integer.MAX_VALUE)
+                evictChunks(chunk);
+
+            if (readOnly)
+                return mapReadOnly(chunk, position + minLength);
+
             long minSize = (chunk + 1L) * chunkSize + overlapSize;
             long size = fileChannel.size();
             if (size < minSize) {
@@ -101,12 +194,444 @@ public class MappedFile implements ReferenceCounted {
             long mappedSize = chunkSize + overlapSize;
             long address = OS.map(fileChannel, FileChannel.MapMode.READ_WRITE, chunk * chunkSize, mappedSize);
             MappedBytesStore mbs2 = new MappedBytesStore(this, chunk * chunkSize, address, mappedSize, chunkSize);
-            stores.set(chunk, new WeakReference<>(mbs2));
+            ensureChunks(chunk + 1).set(chunk, new WeakReference<>(mbs2));
             mbs2.reserve();
             return mbs2;
         }
     }
 
+    // must hold the storesLock
+    private MappedBytesStore mapReadOnly(int chunk, long end) throws IOException {
+        long size = fileChannel.size();
+        if (size < end)
+            throw new EOFException("position: " + end + " size: " + size);
+        long chunkStart = chunk * chunkSize;
+        long mappedSize = Math.min(chunkSize + overlapSize, size - chunkStart);
+        long address = OS.map(fileChannel, FileChannel.MapMode.READ_ONLY, chunkStart, mappedSize);
+        MappedBytesStore mbs2 = new MappedBytesStore(this, chunkStart, address, mappedSize, Math.min(chunkSize, mappedSize));
+        AtomicReferenceArray<WeakReference<MappedBytesStore>> stores = ensureChunks(chunk + 1);
+        // replace a chunk mapped before the file grew.
+        WeakReference<MappedBytesStore> oldRef = stores.getAndSet(chunk, new WeakReference<>(mbs2));
+        MappedBytesStore old = oldRef == null ? null : oldRef.get();
+        if (old != null)
+            old.release();
+        mbs2.reserve();
+        return mbs2;
+    }
+
+    /**
+     * Lock free lookup of an already mapped chunk.
+     *
+     * @return the reserved store or null if it is not mapped, doesn't extend to <code>end</code>, or is being released.
+     */
+    private MappedBytesStore tryAcquire(int chunk, long end) {
+        AtomicReferenceArray<WeakReference<MappedBytesStore>> stores = this.stores;
+        if (chunk >= stores.length())
+            return null;
+        WeakReference<MappedBytesStore> mbsRef = stores.get(chunk);
+        if (mbsRef == null)
+            return null;
+        MappedBytesStore mbs = mbsRef.get();
+        if (mbs == null || end > mbs.capacity() || !mbs.tryReserve())
+            return null;
+        mbs.lastAcquired = System.nanoTime();
+        return mbs;
+    }
+
+    /**
+     * Unmap the least recently acquired chunks which are only reserved by this MappedFile until there is room to
+     * map another chunk.  Must hold the storesLock.
+     *
+     * @param chunk about to be mapped.
+     */
+    private void evictChunks(int chunk) {
+        AtomicReferenceArray<WeakReference<MappedBytesStore>> stores = this.stores;
+        for (; ; ) {
+            int live = 0, lru = -1;
+            long lruAcquired = Long.MAX_VALUE;
+            for (int i = 0; i < storesSize; i++) {
+                WeakReference<MappedBytesStore> storeRef = stores.get(i);
+                if (storeRef == null)
+                    continue;
+                MappedBytesStore mbs = storeRef.get();
+                if (mbs == null || mbs.refCount() <= 0) {
+                    stores.set(i, null);
+                    continue;
+                }
+                if (i == chunk)
+                    continue;
+                live++;
+                // only the reservation held by this MappedFile.
+                if (mbs.refCount() == 1 && mbs.lastAcquired < lruAcquired) {
+                    lruAcquired = mbs.lastAcquired;
+                    lru = i;
+                }
+            }
+            if (live < maxLiveChunks || lru < 0)
+                return;
+            MappedBytesStore mbs = stores.getAndSet(lru, null).get();
+            evictedChunks++;
+            // a concurrent tryReserve() may still hold it, in which case it is unmapped on the last release.
+            if (mbs != null)
+                mbs.release();
+        }
+    }
+
+    /**
+     * Cap the number of chunks mapped at once.  When another chunk needs to be mapped, the least recently acquired
+     * chunk which is not reserved by anything other than this MappedFile is unmapped.  Chunks which are in use are
+     * never unmapped, so the cap can be exceeded while they are held.
+     *
+     * @param maxLiveChunks the maximum number of chunks to keep mapped.
+     * @return this
+     */
+    public MappedFile maxLiveChunks(int maxLiveChunks) {
+        if (maxLiveChunks < 1)
+            throw new IllegalArgumentException("maxLiveChunks: " + maxLiveChunks);
+        this.maxLiveChunks = maxLiveChunks;
+        return this;
+    }
+
+    public int maxLiveChunks() {
+        return maxLiveChunks;
+    }
+
+    /**
+     * @return the number of chunks currently mapped.
+     */
+    public int liveChunks() {
+        int live = 0;
+        AtomicReferenceArray<WeakReference<MappedBytesStore>> stores = this.stores;
+        for (int i = 0; i < storesSize; i++) {
+            WeakReference<MappedBytesStore> storeRef = stores.get(i);
+            if (storeRef == null)
+                continue;
+            MappedBytesStore mbs = storeRef.get();
+            if (mbs != null && mbs.refCount() > 0)
+                live++;
+        }
+        return live;
+    }
+
+    /**
+     * @return the number of chunks unmapped to stay within maxLiveChunks.
+     */
+    public long evictedChunks() {
+        return evictedChunks;
+    }
+
+    /**
+     * @return the number of chunks synced individually rather than by forcing the whole file.
+     */
+    public long syncedChunks() {
+        return syncedChunks;
+    }
+
+    // must hold the storesLock
+    private AtomicReferenceArray<WeakReference<MappedBytesStore>> ensureChunks(int chunks) {
+        AtomicReferenceArray<WeakReference<MappedBytesStore>> stores = this.stores;
+        if (chunks > stores.length()) {
+            int length = stores.length();
+            while (length < chunks)
+                length *= 2;
+            AtomicReferenceArray<WeakReference<MappedBytesStore>> stores2 = new AtomicReferenceArray<>(length);
+            for (int i = 0; i < stores.length(); i++)
+                stores2.set(i, stores.get(i));
+            this.stores = stores = stores2;
+        }
+        if (storesSize < chunks)
+            storesSize = chunks;
+        return stores;
+    }
+
+    /**
+     * Enable mapping and pre-touching the next chunk on a background thread once a writer is
+     * <code>threshold</code> bytes into the current chunk, so crossing the chunk boundary doesn't
+     * stall on growing the file, mapping it and page faults.
+     *
+     * @param threshold offset within a chunk at which to start mapping the next one.
+     * @return this
+     */
+    public MappedFile premapNextChunk(long threshold) {
+        if (threshold < 0 || threshold >= chunkSize)
+            throw new IllegalArgumentException("threshold: " + threshold + " chunkSize: " + chunkSize);
+        synchronized (storesLock) {
+            if (premapper == null)
+                premapper = Executors.newSingleThreadExecutor(r -> {
+                    Thread t = new Thread(r, "premapper-" + name());
+                    t.setDaemon(true);
+                    return t;
+                });
+        }
+        premapThreshold = threshold;
+        return this;
+    }
+
+    /**
+     * @return the position at which the chunk containing <code>position</code> should trigger mapping the next
+     * chunk or Long.MAX_VALUE if pre-mapping is not enabled.
+     */
+    long premapPosition(long position) {
+        long threshold = premapThreshold;
+        if (threshold == Long.MAX_VALUE)
+            return Long.MAX_VALUE;
+        return position / chunkSize * chunkSize + threshold;
+    }
+
+    /**
+     * Request the chunk after the one containing <code>position</code> is mapped in the background.
+     */
+    void premapAfter(long position) {
+        ExecutorService premapper = this.premapper;
+        if (premapper == null)
+            return;
+        int chunk = (int) (position / chunkSize) + 1;
+        int last = premapRequested.get();
+        if (chunk <= last || !premapRequested.compareAndSet(last, chunk))
+            return;
+        try {
+            premapper.execute(() -> premap(chunk));
+        } catch (RejectedExecutionException ignored) {
+            // closed.
+        }
+    }
+
+    private void premap(int chunk) {
+        MappedBytesStore mbs;
+        try {
+            mbs = acquireByteStore(chunk * chunkSize);
+        } catch (EOFException e) {
+            // a read only file which hasn't got that far yet.
+            premapRequested.compareAndSet(chunk, chunk - 1);
+            return;
+        } catch (IOException e) {
+            if (!closed.get())
+                e.printStackTrace();
+            return;
+        }
+        // touch every page, a CAS to the value read triggers a write fault without changing the data.
+        int pageSize = OS.pageSize();
+        for (long offset = mbs.start(); offset < mbs.safeLimit(); offset += pageSize) {
+            int value = mbs.readInt(offset);
+            if (!readOnly)
+                mbs.compareAndSwapInt(offset, value, value);
+        }
+        // hold the reservation so the chunk is still mapped when the writer gets there.
+        MappedBytesStore old;
+        synchronized (storesLock) {
+            if (closed.get()) {
+                old = mbs;
+            } else {
+                old = premapped;
+                premapped = mbs;
+            }
+        }
+        if (old != null)
+            old.release();
+    }
+
+    /**
+     * Request the bytes written to a range of this file are made durable.  Requests are batched so that all the
+     * requests waiting when a flush starts are completed by one msync of each chunk they cover, amortizing the cost
+     * across many writers and messages.
+     *
+     * @param position of the start of the range
+     * @param length   of the range
+     * @return a future completed when the range has been written to the device.
+     */
+    public CompletableFuture<Void> syncAsync(long position, long length) {
+        checkRange(position, length);
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (readOnly || length == 0) {
+            future.complete(null);
+            return future;
+        }
+        if (closed.get()) {
+            future.completeExceptionally(new IOException("Closed"));
+            return future;
+        }
+        syncRequests.add(new SyncRequest(position, length, future));
+        if (syncScheduled.compareAndSet(false, true)) {
+            try {
+                syncer().execute(this::syncPending);
+            } catch (RejectedExecutionException e) {
+                syncScheduled.set(false);
+                // closed, fail the requests close() didn't flush.
+                for (SyncRequest request; (request = syncRequests.poll()) != null; )
+                    request.future.completeExceptionally(new IOException("Closed"));
+            }
+        }
+        return future;
+    }
+
+    private void checkRange(long position, long length) {
+        if (position < 0 || length < 0 || position > capacity || length > capacity - position)
+            throw new IllegalArgumentException("position: " + position + " length: " + length);
+    }
+
+    /**
+     * Block until a range of this file is durable, joining any batch of other requests.
+     */
+    public void sync(long position, long length) throws IOException {
+        try {
+            syncAsync(position, length).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedRuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    private ExecutorService syncer() {
+        ExecutorService syncer = this.syncer;
+        if (syncer == null) {
+            synchronized (storesLock) {
+                // close() shuts the syncer down holding this lock, so don't start one it would miss.
+                if (closed.get())
+                    throw new RejectedExecutionException("Closed");
+                if (this.syncer == null)
+                    this.syncer = Executors.newSingleThreadExecutor(r -> {
+                        Thread t = new Thread(r, "syncer-" + name());
+                        t.setDaemon(true);
+                        return t;
+                    });
+                syncer = this.syncer;
+            }
+        }
+        return syncer;
+    }
+
+    private void syncPending() {
+        // requests added after this point schedule another flush.
+        syncScheduled.set(false);
+        List<SyncRequest> batch = new ArrayList<>();
+        for (SyncRequest request; (request = syncRequests.poll()) != null; )
+            batch.add(request);
+        if (batch.isEmpty())
+            return;
+        try {
+            // FileChannel.force() is only specified for writes through the channel, but writes back the dirty pages
+            // of every mapping of the file on the platforms supported.
+            if (!forceChunks(batch))
+                fileChannel.force(false);
+            for (SyncRequest request : batch)
+                request.future.complete(null);
+        } catch (IOException e) {
+            for (SyncRequest request : batch)
+                request.future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * msync the part of each chunk covered by the batch, once per chunk.
+     *
+     * @return false if a chunk is no longer mapped or msync isn't available, so the whole file should be forced.
+     */
+    private boolean forceChunks(List<SyncRequest> batch) throws IOException {
+        if (FORCE0 == null)
+            return false;
+        // the range of each chunk to msync
+        Map<Long, long[]> ranges = new TreeMap<>();
+        for (SyncRequest request : batch) {
+            long end = request.position + request.length;
+            for (long from = request.position; from < end; ) {
+                long chunk = from / chunkSize;
+                long to = Math.min(end, (chunk + 1) * chunkSize);
+                long[] range = ranges.computeIfAbsent(chunk, c -> new long[]{Long.MAX_VALUE, 0});
+                range[0] = Math.min(range[0], from);
+                range[1] = Math.max(range[1], to);
+                from = to;
+            }
+        }
+        List<MappedBytesStore> chunks = new ArrayList<>();
+        try {
+            for (Map.Entry<Long, long[]> entry : ranges.entrySet()) {
+                long chunk = entry.getKey();
+                MappedBytesStore mbs = chunk < Integer.MAX_VALUE ? tryAcquire((int) chunk, entry.getValue()[1]) : null;
+                // the pages of a chunk unmapped, or never mapped, can only be written back by forcing the file.
+                if (mbs == null)
+                    return false;
+                chunks.add(mbs);
+            }
+            if (forceTarget == null)
+                forceTarget = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, 0);
+            int i = 0;
+            for (long[] range : ranges.values()) {
+                MappedBytesStore mbs = chunks.get(i++);
+                // msync needs a page aligned address, chunks start on a page.
+                long from = range[0] & -OS.pageSize();
+                FORCE0.invoke(forceTarget, raf.getFD(), mbs.address + (from - mbs.start()), range[1] - from);
+                syncedChunks++;
+            }
+            return true;
+
+        } catch (IllegalAccessException e) {
+            return false;
+
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+
+        } finally {
+            for (MappedBytesStore mbs : chunks)
+                mbs.release();
+        }
+    }
+
+    /**
+     * Copy a region of this file to a channel without copying it through the heap, e.g. using sendfile on Linux.
+     *
+     * @param position in this file to start from
+     * @param length   to transfer
+     * @param target   to write to
+     * @return the number of bytes transferred, which is less than length if the end of the file was reached or a
+     * non-blocking target couldn't accept more.
+     * @throws IllegalArgumentException if the position or length is negative, or the range is past the capacity().
+     */
+    public long transferTo(long position, long length, WritableByteChannel target) throws IOException {
+        checkRange(position, length);
+        if (closed.get())
+            throw new IOException("Closed");
+        long transferred = 0;
+        while (transferred < length) {
+            long count = fileChannel.transferTo(position + transferred, length - transferred, target);
+            if (count <= 0)
+                break;
+            transferred += count;
+        }
+        return transferred;
+    }
+
+    /**
+     * Copy from a channel into a region of this file without copying it through the heap.
+     *
+     * @param source   to read from
+     * @param position in this file to start at
+     * @param length   to transfer
+     * @return the number of bytes transferred, which is less than length if the source had no more data available.
+     * @throws IllegalArgumentException if the position or length is negative, or the range is past the capacity().
+     */
+    public long transferFrom(ReadableByteChannel source, long position, long length) throws IOException {
+        checkRange(position, length);
+        if (closed.get())
+            throw new IOException("Closed");
+        if (readOnly)
+            throw new IOException("Read only " + name());
+        long transferred = 0;
+        while (transferred < length) {
+            long count = fileChannel.transferFrom(source, position + transferred, length - transferred);
+            if (count <= 0)
+                break;
+            transferred += count;
+        }
+        return transferred;
+    }
+
     /**
      * Convenience method so you don't need to release the BytesStore
      */
@@ -136,14 +661,62 @@ public class MappedFile implements ReferenceCounted {
     public void close() {
         if (!closed.compareAndSet(false, true))
             return;
-        synchronized (stores) {
-            ReferenceCounted.releaseAll((List) stores);
+        // pooled cursors hold a reservation of the file and a chunk.
+        if (bytesPool != null)
+            bytesPool.close();
+        synchronized (storesLock) {
+            if (premapper != null)
+                premapper.shutdown();
+            if (syncer != null)
+                syncer.shutdown();
+            if (premapped != null) {
+                premapped.release();
+                premapped = null;
+            }
+            AtomicReferenceArray<WeakReference<MappedBytesStore>> stores = this.stores;
+            for (int i = 0; i < storesSize; i++) {
+                WeakReference<MappedBytesStore> storeRef = stores.get(i);
+                if (storeRef == null)
+                    continue;
+                MappedBytesStore mbs = storeRef.get();
+                if (mbs != null)
+                    mbs.release();
+            }
         }
+        // wait for a flush or premap in progress, outside the lock as they may need it, before the channel is closed.
+        awaitTermination(premapper);
+        awaitTermination(syncer);
+        // flush any pending sync requests before the channel is closed.
+        if (syncer != null)
+            syncPending();
         release();
     }
 
+    static final class SyncRequest {
+        final long position;
+        final long length;
+        final CompletableFuture<Void> future;
+
+        SyncRequest(long position, long length, CompletableFuture<Void> future) {
+            this.position = position;
+            this.length = length;
+            this.future = future;
+        }
+    }
+
+    private static void awaitTermination(ExecutorService service) {
+        if (service == null)
+            return;
+        try {
+            service.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     void performRelease() {
-        for (int i = 0; i < stores.size(); i++) {
+        AtomicReferenceArray<WeakReference<MappedBytesStore>> stores = this.stores;
+        for (int i = 0; i < storesSize; i++) {
             WeakReference<MappedBytesStore> storeRef = stores.get(i);
             if (storeRef == null)
                 continue;
@@ -168,7 +741,9 @@ public class MappedFile implements ReferenceCounted {
     public String referenceCounts() {
         StringBuilder sb = new StringBuilder();
         sb.append("refCount: ").append(refCount());
-        for (WeakReference<MappedBytesStore> store : stores) {
+        AtomicReferenceArray<WeakReference<MappedBytesStore>> stores = this.stores;
+        for (int i = 0; i < storesSize; i++) {
+            WeakReference<MappedBytesStore> store = stores.get(i);
             long count = 0;
             if (store != null) {
                 MappedBytesStore mbs = store.get();
@@ -184,6 +759,39 @@ public class MappedFile implements ReferenceCounted {
         return new MappedBytes(this);
     }
 
+    /**
+     * @return a new appender for length prefixed records, one per writing thread.
+     */
+    public MappedAppender appender() throws IOException {
+        return new MappedAppender(this);
+    }
+
+    /**
+     * @return a new tailer for the records written by appenders, one per reading thread.
+     */
+    public MappedTailer tailer(WaitStrategy waitStrategy) {
+        return new MappedTailer(this, waitStrategy);
+    }
+
+    /**
+     * @return the pool of cursors for this file, with a capacity of twice the number of processors.
+     */
+    public MappedBytesPool bytesPool() {
+        MappedBytesPool bytesPool = this.bytesPool;
+        if (bytesPool == null) {
+            synchronized (storesLock) {
+                if (this.bytesPool == null)
+                    this.bytesPool = new MappedBytesPool(this, Runtime.getRuntime().availableProcessors() * 2);
+                bytesPool = this.bytesPool;
+            }
+        }
+        return bytesPool;
+    }
+
+    /**
+     * @deprecated a cursor per thread doesn't scale with many, or virtual, threads, use {@link #bytesPool()}
+     */
+    @Deprecated
     public Bytes bytesThreadLocal() {
         WeakReference<Bytes> bytesRef = threadLocalBytes.get();
         if (bytesRef != null) {
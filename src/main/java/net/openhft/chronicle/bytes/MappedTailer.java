@@ -0,0 +1,151 @@
+/*
+ * Copyright 2015 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.bytes;
+
+import net.openhft.chronicle.core.util.Closeable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.util.concurrent.TimeUnit;
+
+import static net.openhft.chronicle.bytes.MappedAppender.DATA_START;
+import static net.openhft.chronicle.bytes.MappedAppender.LENGTH_SIZE;
+import static net.openhft.chronicle.bytes.MappedAppender.WRITE_POSITION;
+
+/**
+ * Follows the records written by {@link MappedAppender}s to a MappedFile, in this or another process.
+ * <p>
+ * When a record is read, {@link #bytes()} has its position and limit set to the record's payload.  The same bytes
+ * are used for every record, so reading doesn't allocate, even when crossing chunks.  A tailer should be used by one
+ * thread at a time.
+ */
+public class MappedTailer implements Closeable {
+    private final MappedFile mappedFile;
+    private final MappedBytes bytes;
+    private final WaitStrategy waitStrategy;
+    private MappedBytesStore header;
+    private long position = DATA_START;
+
+    MappedTailer(MappedFile mappedFile, WaitStrategy waitStrategy) {
+        this.mappedFile = mappedFile;
+        this.waitStrategy = waitStrategy;
+        this.bytes = new MappedBytes(mappedFile, false);
+    }
+
+    /**
+     * @return the bytes of the last record read.
+     */
+    public Bytes bytes() {
+        return bytes;
+    }
+
+    /**
+     * @return the position of the next record to read.
+     */
+    public long position() {
+        return position;
+    }
+
+    /**
+     * Move to the record at a position previously returned by {@link MappedAppender#append} or {@link #position()}
+     */
+    public MappedTailer position(long position) {
+        if (position < DATA_START)
+            throw new IllegalArgumentException("position: " + position);
+        this.position = position;
+        return this;
+    }
+
+    /**
+     * Read the next record if it has been written, without waiting.
+     *
+     * @return true if a record was read into {@link #bytes()}
+     */
+    public boolean readRecord() {
+        long position = this.position;
+        if (position >= writePosition())
+            return false;
+        int length;
+        try {
+            bytes.limit(bytes.capacity());
+            length = bytes.readVolatileInt(position);
+        } catch (BufferUnderflowException e) {
+            // a read only file the writer hasn't extended yet.
+            return false;
+        }
+        // claimed but not yet published.
+        if (length == 0)
+            return false;
+        long start = position + LENGTH_SIZE;
+        bytes.position(start);
+        bytes.limit(start + length);
+        this.position = position + MappedAppender.recordSize(length);
+        return true;
+    }
+
+    /**
+     * Wait for the next record using the wait strategy.
+     */
+    public void awaitRecord() {
+        for (int attempts = 0; !readRecord(); attempts++) {
+            if (Thread.interrupted())
+                throw new InterruptedRuntimeException(new InterruptedException());
+            waitStrategy.idle(attempts);
+        }
+    }
+
+    /**
+     * Wait up to a timeout for the next record using the wait strategy.
+     *
+     * @return true if a record was read, false if it timed out.
+     */
+    public boolean awaitRecord(long timeout, TimeUnit unit) {
+        long start = System.nanoTime();
+        long timeoutNanos = unit.toNanos(timeout);
+        for (int attempts = 0; !readRecord(); attempts++) {
+            if (System.nanoTime() - start >= timeoutNanos)
+                return false;
+            if (Thread.interrupted())
+                throw new InterruptedRuntimeException(new InterruptedException());
+            waitStrategy.idle(attempts);
+        }
+        return true;
+    }
+
+    private long writePosition() {
+        if (header == null) {
+            try {
+                header = mappedFile.acquireByteStore(WRITE_POSITION, DATA_START);
+            } catch (EOFException e) {
+                // a read only file with nothing written yet.
+                return DATA_START;
+            } catch (IOException e) {
+                throw new IORuntimeException(e);
+            }
+        }
+        return header.readVolatileLong(WRITE_POSITION);
+    }
+
+    @Override
+    public void close() {
+        if (header != null)
+            header.release();
+        bytes.release();
+    }
+}
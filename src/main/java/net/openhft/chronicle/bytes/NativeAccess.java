@@ -19,6 +19,7 @@ package net.openhft.chronicle.bytes;
 import sun.misc.Unsafe;
 
 import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
 public final class NativeAccess<T> implements Access<T> {
@@ -31,6 +32,9 @@ public final class NativeAccess<T> implements Access<T> {
     }
 
     static final Unsafe U;
+    static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+    // as used by java.nio.Bits
+    static final long UNSAFE_COPY_THRESHOLD = 1 << 20;
 
     static {
         try {
@@ -149,17 +153,43 @@ public final class NativeAccess<T> implements Access<T> {
         return ByteOrder.nativeOrder();
     }
 
-/*    @Override
+    @Override
+    @Deprecated
+    @SuppressWarnings("deprecation")
     public <S> void writeFrom(
             T handle, long offset,
             ReadAccess<S> sourceAccess, S source, long sourceOffset, long len) {
         if (sourceAccess instanceof NativeAccess) {
-            U.copyMemory(source, sourceOffset, handle, offset, len);
+            copyMemory(source, sourceOffset, handle, offset, len);
+
+        } else if (sourceAccess instanceof ByteBufferAccess
+                && ByteBufferAccess.isNativeReadable((ByteBuffer) source, sourceOffset, len)) {
+            ByteBuffer bb = (ByteBuffer) source;
+            copyMemory(ByteBufferAccess.nativeHandle(bb), ByteBufferAccess.nativeOffset(bb, sourceOffset),
+                    handle, offset, len);
 
         } else {
             Access.super.writeFrom(handle, offset, sourceAccess, source, sourceOffset, len);
         }
-    }*/
+    }
+
+    /**
+     * Copy memory where either handle may be null for native memory, or an array. Copies to or from the heap are
+     * broken into chunks so a large copy doesn't hold up a safepoint.
+     */
+    static void copyMemory(Object source, long sourceOffset, Object target, long targetOffset, long len) {
+        if (source == target || (source == null && target == null) || len <= UNSAFE_COPY_THRESHOLD) {
+            U.copyMemory(source, sourceOffset, target, targetOffset, len);
+            return;
+        }
+        while (len > 0) {
+            long size = Math.min(len, UNSAFE_COPY_THRESHOLD);
+            U.copyMemory(source, sourceOffset, target, targetOffset, size);
+            len -= size;
+            sourceOffset += size;
+            targetOffset += size;
+        }
+    }
 
     @Override
     public void writeBytes(T handle, long offset, long len, byte b) {
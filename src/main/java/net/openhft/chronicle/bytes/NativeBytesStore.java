@@ -18,10 +18,10 @@
 
 package net.openhft.chronicle.bytes;
 
+import net.openhft.chronicle.bytes.OffHeapAccounting.MemoryType;
 import net.openhft.chronicle.core.Maths;
 import net.openhft.chronicle.core.Memory;
 import net.openhft.chronicle.core.OS;
-import net.openhft.chronicle.core.ReferenceCounter;
 import sun.misc.Cleaner;
 import sun.nio.ch.DirectBuffer;
 
@@ -31,21 +31,50 @@ import static net.openhft.chronicle.bytes.Access.nativeAccess;
 
 public class NativeBytesStore<Underlying>
         implements BytesStore<NativeBytesStore<Underlying>, Underlying> {
+    public static final int CACHE_LINE_SIZE = 64;
+    public static final int PAGE_SIZE = 4 << 10;
+    public static final int HUGE_PAGE_SIZE = 2 << 20;
     private static final long MEMORY_MAPPED_SIZE = 128 << 10;
     private static final Memory MEMORY = OS.memory();
     private final Cleaner cleaner;
-    private final ReferenceCounter refCount = ReferenceCounter.onReleased(this::performRelease);
+    // frees the direct ByteBuffer when this is explicitly released.
+    private final Runnable releaseBuffer;
+    private RefCount refCount = RefCount.onReleased(this::performRelease);
     private final boolean elastic;
     protected long address;
     private volatile Underlying underlyingObject;
     private long maximumLimit;
+    // set when OffHeapAccounting is tracking stores.
+    long trackingId;
 
-    private NativeBytesStore(ByteBuffer bb, boolean elastic) {
+    /**
+     * @param allocated whether this library allocated the buffer, only those are accounted for as a buffer may be
+     *                  wrapped many times.
+     */
+    private NativeBytesStore(ByteBuffer bb, boolean elastic, boolean allocated) {
         this.elastic = elastic;
         underlyingObject = (Underlying) bb;
         this.address = ((DirectBuffer) bb).address();
         this.maximumLimit = bb.capacity();
-        cleaner = ((DirectBuffer) bb).cleaner();
+        // the buffer frees its own memory when it is collected, and may still be used after this store is collected.
+        cleaner = null;
+        Cleaner bbCleaner = ((DirectBuffer) bb).cleaner();
+        // a slice or duplicate of a buffer doesn't own its memory.
+        if (bbCleaner == null) {
+            releaseBuffer = null;
+        } else if (!allocated) {
+            releaseBuffer = bbCleaner::clean;
+        } else {
+            OffHeapAccounting.allocated(MemoryType.DIRECT_BUFFER, maximumLimit);
+            // account for the memory once, on release or when the buffer itself is collected.
+            Runnable freed = OffHeapAccounting.freeingOnce(MemoryType.DIRECT_BUFFER, maximumLimit);
+            Cleaner.create(bb, freed);
+            releaseBuffer = () -> {
+                bbCleaner.clean();
+                freed.run();
+            };
+            trackingId = OffHeapAccounting.track(this, MemoryType.DIRECT_BUFFER, maximumLimit);
+        }
     }
 
     protected NativeBytesStore(
@@ -53,12 +82,32 @@ public class NativeBytesStore<Underlying>
         this.address = address;
         this.maximumLimit = maximumLimit;
         cleaner = Cleaner.create(this, deallocator);
+        releaseBuffer = null;
+        underlyingObject = null;
+        this.elastic = elastic;
+    }
+
+    /**
+     * For stores which manage their own memory in performRelease() and have no Cleaner.
+     */
+    NativeBytesStore(long address, long maximumLimit, boolean elastic) {
+        this.address = address;
+        this.maximumLimit = maximumLimit;
+        cleaner = null;
+        releaseBuffer = null;
         underlyingObject = null;
         this.elastic = elastic;
     }
 
     static NativeBytesStore<ByteBuffer> wrap(ByteBuffer bb) {
-        return new NativeBytesStore<>(bb, false);
+        return new NativeBytesStore<>(bb, false, false);
+    }
+
+    /**
+     * @return a store of a new direct ByteBuffer which is accounted for.
+     */
+    static NativeBytesStore<ByteBuffer> allocateDirect(int capacity, boolean elastic) {
+        return new NativeBytesStore<>(ByteBuffer.allocateDirect(capacity), elastic, true);
     }
 
     @Override
@@ -69,10 +118,11 @@ public class NativeBytesStore<Underlying>
             return (BytesStore) copy;
 
         } else if (underlyingObject instanceof ByteBuffer) {
-            ByteBuffer bb = ByteBuffer.allocateDirect(Maths.toInt32(capacity()));
+            NativeBytesStore<ByteBuffer> copy = allocateDirect(Maths.toInt32(capacity()), false);
+            ByteBuffer bb = copy.underlyingObject();
             bb.put((ByteBuffer) underlyingObject);
             bb.clear();
-            return (BytesStore) wrap(bb);
+            return (BytesStore) copy;
 
         } else {
             throw new UnsupportedOperationException();
@@ -89,13 +139,15 @@ public class NativeBytesStore<Underlying>
     }
 
     private static NativeBytesStore<Void> of(long capacity, boolean zeroOut, boolean elastic) {
-        long address = MEMORY.allocate(capacity);
+        long address = OffHeapAccounting.allocateNative(capacity);
         if (zeroOut || capacity < MEMORY_MAPPED_SIZE) {
             MEMORY.setMemory(address, capacity, (byte) 0);
             MEMORY.storeFence();
         }
-        Deallocator deallocator = new Deallocator(address);
-        return new NativeBytesStore<>(address, capacity, deallocator, elastic);
+        Deallocator deallocator = new Deallocator(address, capacity);
+        NativeBytesStore<Void> store = new NativeBytesStore<>(address, capacity, deallocator, elastic);
+        store.trackingId = OffHeapAccounting.track(store, MemoryType.NATIVE, capacity);
+        return store;
     }
 
     public static NativeBytesStore<Void> nativeStoreWithFixedCapacity(long capacity) {
@@ -106,12 +158,48 @@ public class NativeBytesStore<Underlying>
         return of(capacity, false, false);
     }
 
+    /**
+     * A zeroed fixed capacity store whose address is a multiple of alignment e.g. {@link #CACHE_LINE_SIZE} to avoid
+     * false sharing, {@link #PAGE_SIZE} or {@link #HUGE_PAGE_SIZE}. Up to alignment - 1 extra bytes are allocated.
+     *
+     * @param alignment a power of 2
+     */
+    public static NativeBytesStore<Void> alignedNativeStore(long capacity, long alignment) {
+        if (Long.bitCount(alignment) != 1)
+            throw new IllegalArgumentException("alignment must be a power of 2, was " + alignment);
+        long size = capacity + alignment - 1;
+        long base = OffHeapAccounting.allocateNative(size);
+        long address = (base + alignment - 1) & -alignment;
+        MEMORY.setMemory(address, capacity, (byte) 0);
+        MEMORY.storeFence();
+        // the base address is freed, not the aligned one.
+        NativeBytesStore<Void> store = new NativeBytesStore<>(address, capacity, new Deallocator(base, size), false);
+        store.trackingId = OffHeapAccounting.track(store, MemoryType.NATIVE, size);
+        return store;
+    }
+
+    public static NativeBytesStore<Void> cacheLineAlignedNativeStore(long capacity) {
+        return alignedNativeStore(capacity, CACHE_LINE_SIZE);
+    }
+
+    public static NativeBytesStore<Void> pageAlignedNativeStore(long capacity) {
+        return alignedNativeStore(capacity, PAGE_SIZE);
+    }
+
+    /**
+     * A fixed capacity store from the default {@link NativeBytesStorePool}, release() returns the memory to the pool.
+     * The memory is not zeroed.
+     */
+    public static NativeBytesStore<Void> pooledNativeStoreWithFixedCapacity(long capacity) {
+        return NativeBytesStorePool.defaultPool().allocate(capacity);
+    }
+
     public static NativeBytesStore<ByteBuffer> elasticByteBuffer() {
         return elasticByteBuffer(OS.pageSize());
     }
 
     public static NativeBytesStore<ByteBuffer> elasticByteBuffer(int size) {
-        return new NativeBytesStore<>(ByteBuffer.allocateDirect(size), true);
+        return allocateDirect(size, true);
     }
 
     @Override
@@ -189,6 +277,17 @@ public class NativeBytesStore<Underlying>
         return refCount.get();
     }
 
+    @Override
+    public NativeBytesStore<Underlying> threadConfined() {
+        refCount = refCount.threadConfined();
+        return this;
+    }
+
+    @Override
+    public boolean isThreadConfined() {
+        return refCount.isThreadConfined();
+    }
+
     @Override
     public byte readByte(long offset) {
         return MEMORY.readByte(address + translate(offset));
@@ -300,8 +399,7 @@ public class NativeBytesStore<Underlying>
     @Override
     public NativeBytesStore<Underlying> write(
             long offsetInRDO, Bytes bytes, long offset, long length) {
-        Access.copy(bytes.access(), bytes.accessHandle(), bytes.accessOffset(offset),
-                access(), accessHandle(), accessOffset(offsetInRDO), length);
+        BytesUtil.copy(bytes, offset, access(), accessHandle(), accessOffset(offsetInRDO), length);
         return this;
     }
 
@@ -321,7 +419,11 @@ public class NativeBytesStore<Underlying>
     }
 
     protected void performRelease() {
-        cleaner.clean();
+        OffHeapAccounting.untrack(trackingId);
+        if (cleaner != null)
+            cleaner.clean();
+        if (releaseBuffer != null)
+            releaseBuffer.run();
     }
 
     public boolean isElastic() {
@@ -358,19 +460,22 @@ public class NativeBytesStore<Underlying>
     }
 
     static class Deallocator implements Runnable {
+        private final long size;
         private volatile long address;
 
-        Deallocator(long address) {
+        Deallocator(long address, long size) {
             assert address != 0;
             this.address = address;
+            this.size = size;
         }
 
         @Override
         public void run() {
+            long address = this.address;
             if (address == 0)
                 return;
-            address = 0;
-            MEMORY.freeMemory(address);
+            this.address = 0;
+            OffHeapAccounting.freeNative(address, size);
         }
     }
 }
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2015 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.bytes;
+
+import sun.misc.Cleaner;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A size class allocator for fixed capacity native stores.
+ * <p>
+ * Capacities are rounded up to a power of two between {@link #MIN_BLOCK_SIZE} and {@link #MAX_BLOCK_SIZE}.
+ * Released blocks go to a small cache for the releasing thread, overflowing to a lock-free shared cache and
+ * finally back to the OS. Larger capacities are not pooled. Memory is not zeroed on allocation.
+ * <p>
+ * A store which is collected without being released, and the cache of a thread which has died, return their
+ * blocks to the shared cache or the OS via a Cleaner.
+ */
+public class NativeBytesStorePool {
+    public static final int MIN_BLOCK_SIZE = 64;
+    public static final int MAX_BLOCK_SIZE = 1 << 20;
+    static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_BLOCK_SIZE);
+    static final int SIZE_CLASSES = Integer.numberOfTrailingZeros(MAX_BLOCK_SIZE) - MIN_SHIFT + 1;
+    private static final NativeBytesStorePool DEFAULT = new NativeBytesStorePool(16, 64);
+
+    private final int threadCacheSize;
+    private final int sharedCacheSize;
+    private final ThreadLocal<ThreadCache> threadCaches;
+    // blocks of each size class, 0 is an empty slot.
+    private final AtomicLongArray shared;
+
+    private final LongAdder allocations = new LongAdder();
+    private final LongAdder threadCacheHits = new LongAdder();
+    private final LongAdder sharedCacheHits = new LongAdder();
+    private final LongAdder nativeAllocations = new LongAdder();
+    private final LongAdder nativeFrees = new LongAdder();
+
+    /**
+     * @param threadCacheSize blocks cached per size class per thread.
+     * @param sharedCacheSize blocks cached per size class between all threads.
+     */
+    public NativeBytesStorePool(int threadCacheSize, int sharedCacheSize) {
+        this.threadCacheSize = threadCacheSize;
+        this.sharedCacheSize = sharedCacheSize;
+        threadCaches = ThreadLocal.withInitial(() -> new ThreadCache(this, threadCacheSize));
+        shared = new AtomicLongArray(SIZE_CLASSES * sharedCacheSize);
+    }
+
+    public static NativeBytesStorePool defaultPool() {
+        return DEFAULT;
+    }
+
+    static int sizeClass(long capacity) {
+        if (capacity <= MIN_BLOCK_SIZE)
+            return 0;
+        return 64 - Long.numberOfLeadingZeros(capacity - 1) - MIN_SHIFT;
+    }
+
+    static long blockSize(int sizeClass) {
+        return 1L << (sizeClass + MIN_SHIFT);
+    }
+
+    /**
+     * @param capacity of the store, the memory is not zeroed.
+     * @return a fixed capacity store which returns its memory to this pool on release.
+     */
+    public NativeBytesStore<Void> allocate(long capacity) {
+        if (capacity < 0)
+            throw new IllegalArgumentException("capacity: " + capacity);
+        if (capacity > MAX_BLOCK_SIZE)
+            return NativeBytesStore.lazyNativeBytesStoreWithFixedCapacity(capacity);
+        allocations.increment();
+        int sizeClass = sizeClass(capacity);
+        return new PooledNativeBytesStore(this, acquire(sizeClass), capacity, sizeClass);
+    }
+
+    private long acquire(int sizeClass) {
+        long[] cache = threadCaches.get().blocks[sizeClass];
+        int count = (int) cache[threadCacheSize];
+        if (count > 0) {
+            cache[threadCacheSize] = --count;
+            threadCacheHits.increment();
+            return cache[count];
+        }
+        for (int i = sizeClass * sharedCacheSize, end = i + sharedCacheSize; i < end; i++) {
+            if (shared.get(i) == 0)
+                continue;
+            long address = shared.getAndSet(i, 0);
+            if (address != 0) {
+                sharedCacheHits.increment();
+                return address;
+            }
+        }
+        nativeAllocations.increment();
+        return OffHeapAccounting.allocateNative(blockSize(sizeClass));
+    }
+
+    void free(long address, int sizeClass) {
+        long[] cache = threadCaches.get().blocks[sizeClass];
+        int count = (int) cache[threadCacheSize];
+        if (count < threadCacheSize) {
+            cache[count] = address;
+            cache[threadCacheSize] = count + 1;
+            return;
+        }
+        freeShared(address, sizeClass);
+    }
+
+    // for threads other than the owner of a thread cache, e.g. the Cleaner's.
+    void freeShared(long address, int sizeClass) {
+        for (int i = sizeClass * sharedCacheSize, end = i + sharedCacheSize; i < end; i++) {
+            if (shared.get(i) == 0 && shared.compareAndSet(i, 0, address))
+                return;
+        }
+        nativeFrees.increment();
+        OffHeapAccounting.freeNative(address, blockSize(sizeClass));
+    }
+
+    /**
+     * Free the blocks in the shared cache and the cache of the calling thread.
+     */
+    public void trim() {
+        long[][] caches = threadCaches.get().blocks;
+        for (int sizeClass = 0; sizeClass < SIZE_CLASSES; sizeClass++) {
+            long[] cache = caches[sizeClass];
+            for (int i = 0; i < cache[threadCacheSize]; i++) {
+                nativeFrees.increment();
+                OffHeapAccounting.freeNative(cache[i], blockSize(sizeClass));
+            }
+            cache[threadCacheSize] = 0;
+            for (int i = sizeClass * sharedCacheSize, end = i + sharedCacheSize; i < end; i++) {
+                long address = shared.getAndSet(i, 0);
+                if (address != 0) {
+                    nativeFrees.increment();
+                    OffHeapAccounting.freeNative(address, blockSize(sizeClass));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of pooled stores allocated.
+     */
+    public long allocations() {
+        return allocations.sum();
+    }
+
+    /**
+     * @return the number of allocations served from the cache of the allocating thread.
+     */
+    public long threadCacheHits() {
+        return threadCacheHits.sum();
+    }
+
+    /**
+     * @return the number of allocations served from the shared cache.
+     */
+    public long sharedCacheHits() {
+        return sharedCacheHits.sum();
+    }
+
+    /**
+     * @return the number of blocks allocated from the OS.
+     */
+    public long nativeAllocations() {
+        return nativeAllocations.sum();
+    }
+
+    /**
+     * @return the number of blocks freed back to the OS.
+     */
+    public long nativeFrees() {
+        return nativeFrees.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "NativeBytesStorePool{" +
+                "allocations=" + allocations() +
+                ", threadCacheHits=" + threadCacheHits() +
+                ", sharedCacheHits=" + sharedCacheHits() +
+                ", nativeAllocations=" + nativeAllocations() +
+                ", nativeFrees=" + nativeFrees() +
+                '}';
+    }
+
+    static final class ThreadCache {
+        // the count of each size class is held in the last element.
+        final long[][] blocks;
+
+        ThreadCache(NativeBytesStorePool pool, int threadCacheSize) {
+            blocks = new long[SIZE_CLASSES][threadCacheSize + 1];
+            // when the thread has died, its blocks are no longer used.
+            Cleaner.create(this, new ThreadCacheDrainer(pool, blocks));
+        }
+    }
+
+    static final class ThreadCacheDrainer implements Runnable {
+        private final NativeBytesStorePool pool;
+        private final long[][] blocks;
+
+        ThreadCacheDrainer(NativeBytesStorePool pool, long[][] blocks) {
+            this.pool = pool;
+            this.blocks = blocks;
+        }
+
+        @Override
+        public void run() {
+            for (int sizeClass = 0; sizeClass < blocks.length; sizeClass++) {
+                long[] cache = blocks[sizeClass];
+                int count = (int) cache[cache.length - 1];
+                for (int i = 0; i < count; i++)
+                    pool.freeShared(cache[i], sizeClass);
+                cache[cache.length - 1] = 0;
+            }
+        }
+    }
+
+    static final class PooledNativeBytesStore extends NativeBytesStore<Void> {
+        private final NativeBytesStorePool pool;
+        private final int sizeClass;
+        private final BlockReclaimer reclaimer;
+        private final Cleaner cleaner;
+
+        PooledNativeBytesStore(NativeBytesStorePool pool, long address, long capacity, int sizeClass) {
+            super(address, capacity, false);
+            this.pool = pool;
+            this.sizeClass = sizeClass;
+            reclaimer = new BlockReclaimer(pool, address, sizeClass);
+            cleaner = Cleaner.create(this, reclaimer);
+            trackingId = OffHeapAccounting.track(this, OffHeapAccounting.MemoryType.NATIVE, capacity);
+        }
+
+        @Override
+        protected void performRelease() {
+            super.performRelease();
+            // drop the Cleaner without it returning the block, which goes to this thread's cache instead.
+            reclaimer.released = true;
+            cleaner.clean();
+            pool.free(address, sizeClass);
+        }
+    }
+
+    // returns the block of a store which was collected without being released.
+    static final class BlockReclaimer implements Runnable {
+        private final NativeBytesStorePool pool;
+        private final long address;
+        private final int sizeClass;
+        boolean released = false;
+
+        BlockReclaimer(NativeBytesStorePool pool, long address, int sizeClass) {
+            this.pool = pool;
+            this.address = address;
+            this.sizeClass = sizeClass;
+        }
+
+        @Override
+        public void run() {
+            if (!released)
+                pool.freeShared(address, sizeClass);
+        }
+    }
+}
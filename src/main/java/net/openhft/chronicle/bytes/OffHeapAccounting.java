@@ -0,0 +1,260 @@
+/*
+ * Copyright 2015 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.bytes;
+
+import net.openhft.chronicle.core.Memory;
+import net.openhft.chronicle.core.OS;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Global accounting of the off heap memory held by stores, by type of memory.
+ * <p>
+ * Optionally, enabled with -Dchronicle.bytes.tracking=true or {@link #setTracking(boolean)}, the stack trace of where
+ * each store was created is recorded until it is released, so the outstanding stores can be dumped to find leaks.
+ */
+public final class OffHeapAccounting implements OffHeapAccountingMXBean {
+    public static final String OBJECT_NAME = "net.openhft.chronicle.bytes:type=OffHeapAccounting";
+    private static final Memory MEMORY = OS.memory();
+    private static final OffHeapAccounting INSTANCE = new OffHeapAccounting();
+
+    private final LongAdder[] allocated = newAdders();
+    private final LongAdder[] freed = newAdders();
+    private final AtomicLong trackingIds = new AtomicLong();
+    private final Map<Long, TrackedStore> trackedStores = new ConcurrentHashMap<>();
+    private volatile boolean tracking = Boolean.getBoolean("chronicle.bytes.tracking");
+
+    private OffHeapAccounting() {
+    }
+
+    public static OffHeapAccounting instance() {
+        return INSTANCE;
+    }
+
+    private static LongAdder[] newAdders() {
+        LongAdder[] adders = new LongAdder[MemoryType.values().length];
+        for (int i = 0; i < adders.length; i++)
+            adders[i] = new LongAdder();
+        return adders;
+    }
+
+    /**
+     * Register this with the platform MBeanServer, if not already registered.
+     */
+    public static synchronized void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name))
+                server.registerMBean(INSTANCE, name);
+        } catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static void allocated(MemoryType type, long size) {
+        INSTANCE.allocated[type.ordinal()].add(size);
+    }
+
+    static void freed(MemoryType type, long size) {
+        INSTANCE.freed[type.ordinal()].add(size);
+    }
+
+    static long allocateNative(long size) {
+        long address = MEMORY.allocate(size);
+        allocated(MemoryType.NATIVE, size);
+        return address;
+    }
+
+    static void freeNative(long address, long size) {
+        MEMORY.freeMemory(address);
+        freed(MemoryType.NATIVE, size);
+    }
+
+    /**
+     * @return a Runnable which accounts for the memory being freed after running release.
+     */
+    static Runnable freeing(MemoryType type, long size, Runnable release) {
+        return () -> {
+            release.run();
+            freed(type, size);
+        };
+    }
+
+    /**
+     * @return a Runnable which accounts for the memory being freed the first time it is run.
+     */
+    static Runnable freeingOnce(MemoryType type, long size) {
+        AtomicBoolean done = new AtomicBoolean();
+        return () -> {
+            if (done.compareAndSet(false, true))
+                freed(type, size);
+        };
+    }
+
+    /**
+     * @return the id to pass to untrack() when the store is released, or 0 if tracking is off.
+     */
+    static long track(Object store, MemoryType type, long size) {
+        if (!INSTANCE.tracking)
+            return 0;
+        long id = INSTANCE.trackingIds.incrementAndGet();
+        INSTANCE.trackedStores.put(id, new TrackedStore(store, type, size));
+        return id;
+    }
+
+    static void untrack(long id) {
+        if (id != 0)
+            INSTANCE.trackedStores.remove(id);
+    }
+
+    public long bytesAllocated(MemoryType type) {
+        return allocated[type.ordinal()].sum();
+    }
+
+    public long bytesFreed(MemoryType type) {
+        return freed[type.ordinal()].sum();
+    }
+
+    public long bytesInUse(MemoryType type) {
+        // read freed first so a concurrent allocation and free doesn't appear negative.
+        long freed = bytesFreed(type);
+        return bytesAllocated(type) - freed;
+    }
+
+    @Override
+    public long getNativeBytesInUse() {
+        return bytesInUse(MemoryType.NATIVE);
+    }
+
+    @Override
+    public long getNativeBytesAllocated() {
+        return bytesAllocated(MemoryType.NATIVE);
+    }
+
+    @Override
+    public long getNativeBytesFreed() {
+        return bytesFreed(MemoryType.NATIVE);
+    }
+
+    @Override
+    public long getMappedBytesInUse() {
+        return bytesInUse(MemoryType.MAPPED);
+    }
+
+    @Override
+    public long getMappedBytesAllocated() {
+        return bytesAllocated(MemoryType.MAPPED);
+    }
+
+    @Override
+    public long getMappedBytesFreed() {
+        return bytesFreed(MemoryType.MAPPED);
+    }
+
+    @Override
+    public long getDirectBufferBytesInUse() {
+        return bytesInUse(MemoryType.DIRECT_BUFFER);
+    }
+
+    @Override
+    public long getDirectBufferBytesAllocated() {
+        return bytesAllocated(MemoryType.DIRECT_BUFFER);
+    }
+
+    @Override
+    public long getDirectBufferBytesFreed() {
+        return bytesFreed(MemoryType.DIRECT_BUFFER);
+    }
+
+    @Override
+    public boolean isTracking() {
+        return tracking;
+    }
+
+    /**
+     * Record where stores created from now on were created. Turning tracking off forgets the stores tracked.
+     */
+    @Override
+    public void setTracking(boolean tracking) {
+        this.tracking = tracking;
+        if (!tracking)
+            trackedStores.clear();
+    }
+
+    @Override
+    public int getTrackedStores() {
+        return trackedStores.size();
+    }
+
+    /**
+     * @return the type, size and stack trace of creation of each tracked store not yet released. Stores which were
+     * garbage collected without being released are reported once and then forgotten.
+     */
+    @Override
+    public String dumpTrackedStores() {
+        StringWriter sw = new StringWriter();
+        PrintWriter pw = new PrintWriter(sw);
+        for (Map.Entry<Long, TrackedStore> entry : trackedStores.entrySet()) {
+            TrackedStore ts = entry.getValue();
+            Object store = ts.store.get();
+            if (store == null) {
+                trackedStores.remove(entry.getKey());
+                pw.println(ts.type + " store of " + ts.size + " bytes collected without being released, created at");
+            } else {
+                pw.println(ts.type + " " + store.getClass().getSimpleName() + " of " + ts.size + " bytes, refCount "
+                        + ((BytesStore) store).refCount() + ", created at");
+            }
+            for (StackTraceElement ste : ts.createdHere.getStackTrace())
+                pw.println("\tat " + ste);
+        }
+        pw.flush();
+        return sw.toString();
+    }
+
+    public enum MemoryType {
+        NATIVE, MAPPED,
+        // direct ByteBuffers allocated by this library, buffers which are only wrapped are not counted.
+        DIRECT_BUFFER
+    }
+
+    static final class TrackedStore {
+        final WeakReference<Object> store;
+        final MemoryType type;
+        final long size;
+        final Throwable createdHere = new Throwable();
+
+        TrackedStore(Object store, MemoryType type, long size) {
+            this.store = new WeakReference<>(store);
+            this.type = type;
+            this.size = size;
+        }
+    }
+}
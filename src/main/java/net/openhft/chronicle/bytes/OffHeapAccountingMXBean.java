@@ -0,0 +1,50 @@
+/*
+ * Copyright 2015 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.bytes;
+
+/**
+ * JMX view of {@link OffHeapAccounting}, registered with {@link OffHeapAccounting#registerMBean()}.
+ */
+public interface OffHeapAccountingMXBean {
+    long getNativeBytesInUse();
+
+    long getNativeBytesAllocated();
+
+    long getNativeBytesFreed();
+
+    long getMappedBytesInUse();
+
+    long getMappedBytesAllocated();
+
+    long getMappedBytesFreed();
+
+    long getDirectBufferBytesInUse();
+
+    long getDirectBufferBytesAllocated();
+
+    long getDirectBufferBytesFreed();
+
+    boolean isTracking();
+
+    void setTracking(boolean tracking);
+
+    int getTrackedStores();
+
+    String dumpTrackedStores();
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.bytes;
+
+/**
+ * Bytes borrowed from a {@link BytesPool}, returned to the pool by close(). The Bytes must not be used once closed.
+ */
+public final class PooledBytes implements AutoCloseable {
+    private final BytesPool pool;
+    private final Bytes<Void> bytes;
+    private boolean borrowed = true;
+    // the thread which last borrowed these Bytes.
+    private Thread owner = Thread.currentThread();
+
+    PooledBytes(BytesPool pool, Bytes<Void> bytes) {
+        this.pool = pool;
+        this.bytes = bytes;
+    }
+
+    public Bytes<Void> bytes() {
+        return bytes;
+    }
+
+    void borrowed() {
+        borrowed = true;
+        owner = Thread.currentThread();
+    }
+
+    Thread owner() {
+        return owner;
+    }
+
+    /**
+     * Return the Bytes to the pool.
+     */
+    @Override
+    public void close() {
+        if (!borrowed)
+            throw new IllegalStateException("Already returned");
+        borrowed = false;
+        if (pool == null)
+            bytes.release();
+        else
+            pool.returnBytes(this);
+    }
+}
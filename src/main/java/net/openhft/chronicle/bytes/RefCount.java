@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.bytes;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The reference count of a Bytes or BytesStore, which runs onRelease when the count reaches 0.
+ * <p>
+ * By default the count is atomic. A thread confined count uses plain field updates and, with assertions enabled,
+ * checks it is only used by the thread which owns it.
+ */
+abstract class RefCount {
+    final Runnable onRelease;
+
+    RefCount(Runnable onRelease) {
+        this.onRelease = onRelease;
+    }
+
+    static RefCount onReleased(Runnable onRelease) {
+        return new Atomic(onRelease);
+    }
+
+    abstract void reserve() throws IllegalStateException;
+
+    abstract void release() throws IllegalStateException;
+
+    abstract long get();
+
+    boolean isThreadConfined() {
+        return false;
+    }
+
+    /**
+     * @return a count confined to the current thread, with the same value as this.
+     */
+    RefCount threadConfined() {
+        return new ThreadConfined(onRelease, get(), Thread.currentThread());
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(get());
+    }
+
+    static final class Atomic extends RefCount {
+        private final AtomicLong value = new AtomicLong(1);
+
+        Atomic(Runnable onRelease) {
+            super(onRelease);
+        }
+
+        @Override
+        void reserve() {
+            for (; ; ) {
+                long v = value.get();
+                if (v <= 0)
+                    throw new IllegalStateException("Released");
+                if (value.compareAndSet(v, v + 1))
+                    return;
+            }
+        }
+
+        @Override
+        void release() {
+            for (; ; ) {
+                long v = value.get();
+                if (v <= 0)
+                    throw new IllegalStateException("Released");
+                if (value.compareAndSet(v, v - 1)) {
+                    if (v == 1)
+                        onRelease.run();
+                    return;
+                }
+            }
+        }
+
+        @Override
+        long get() {
+            return value.get();
+        }
+    }
+
+    static final class ThreadConfined extends RefCount {
+        private final Thread owner;
+        private long value;
+
+        ThreadConfined(Runnable onRelease, long value, Thread owner) {
+            super(onRelease);
+            this.value = value;
+            this.owner = owner;
+        }
+
+        @Override
+        void reserve() {
+            assert checkOwner();
+            if (value <= 0)
+                throw new IllegalStateException("Released");
+            value++;
+        }
+
+        @Override
+        void release() {
+            assert checkOwner();
+            if (value <= 0)
+                throw new IllegalStateException("Released");
+            if (--value == 0)
+                onRelease.run();
+        }
+
+        @Override
+        long get() {
+            return value;
+        }
+
+        @Override
+        boolean isThreadConfined() {
+            return true;
+        }
+
+        @Override
+        RefCount threadConfined() {
+            assert checkOwner();
+            return this;
+        }
+
+        private boolean checkOwner() {
+            Thread thread = Thread.currentThread();
+            if (thread != owner)
+                throw new IllegalStateException("Confined to " + owner.getName() + " but used by " + thread.getName());
+            return true;
+        }
+    }
+}
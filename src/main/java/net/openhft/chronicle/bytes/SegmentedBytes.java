@@ -0,0 +1,361 @@
+/*
+ * Copyright 2015 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.bytes;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Elastic native Bytes which grows by adding fixed size segments rather than copying into a larger store, so growth
+ * never copies the data written so far.
+ * <p>
+ * Access within a segment goes straight to that segment's memory, only values and bulk copies which cross the end of
+ * a segment are split. A value split across segments is not written or read atomically and compareAndSwap of such a
+ * value is not supported, aligned values never cross a segment.
+ */
+public class SegmentedBytes extends ChunkedBytes {
+    public static final long DEFAULT_SEGMENT_SIZE = 1 << 20;
+    private static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+    private final long segmentSize;
+    private final int segmentShift;
+    private Segment[] segments = new Segment[8];
+    private int segmentCount = 0;
+
+    SegmentedBytes(long segmentSize) {
+        super(NoBytesStore.noBytesStore());
+        if (segmentSize < 64 || Long.bitCount(segmentSize) != 1)
+            throw new IllegalArgumentException("segmentSize must be a power of 2 of at least 64, was " + segmentSize);
+        this.segmentSize = segmentSize;
+        this.segmentShift = Long.numberOfTrailingZeros(segmentSize);
+    }
+
+    public static SegmentedBytes segmentedBytes() {
+        return new SegmentedBytes(DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param segmentSize a power of 2
+     */
+    public static SegmentedBytes segmentedBytes(long segmentSize) {
+        return new SegmentedBytes(segmentSize);
+    }
+
+    public long segmentSize() {
+        return segmentSize;
+    }
+
+    public int segmentCount() {
+        return segmentCount;
+    }
+
+    @Override
+    public long capacity() {
+        return 1L << 40;
+    }
+
+    @Override
+    public long realCapacity() {
+        return (long) segmentCount << segmentShift;
+    }
+
+    @Override
+    public long start() {
+        return 0L;
+    }
+
+    @Override
+    public boolean isElastic() {
+        return true;
+    }
+
+    @Override
+    public boolean isNative() {
+        return true;
+    }
+
+    @Override
+    public void ensureCapacity(long size) {
+        if (size > capacity())
+            throw new IllegalArgumentException("size: " + size);
+        addSegments(size);
+    }
+
+    @Override
+    protected void writeCheckOffset(long offset, long adding) {
+        long end = bytesStore.capacity();
+        if (offset >= bytesStore.start() && offset < end && offset + adding <= end)
+            return;
+        super.writeCheckOffset(offset, adding);
+        if (offset < 0)
+            throw new BufferUnderflowException();
+        addSegments(Math.max(offset + adding, offset + 1));
+        bytesStore = segments[(int) (offset >>> segmentShift)];
+    }
+
+    @Override
+    protected void readCheckOffset(long offset, long adding) {
+        if (offset >= bytesStore.start() && offset < bytesStore.capacity())
+            return;
+        super.readCheckOffset(offset, adding);
+        int index = (int) (offset >>> segmentShift);
+        if (offset < 0 || index >= segmentCount) {
+            if (adding > 0)
+                throw new BufferUnderflowException();
+            return;
+        }
+        bytesStore = segments[index];
+    }
+
+    private void addSegments(long end) {
+        int count = (int) ((end + segmentSize - 1) >>> segmentShift);
+        if (count <= segmentCount)
+            return;
+        // only the table of segments is copied.
+        if (count > segments.length)
+            segments = Arrays.copyOf(segments, Math.max(count, segments.length * 2));
+        for (int i = segmentCount; i < count; i++)
+            segments[i] = new Segment((long) i << segmentShift, segmentSize);
+        segmentCount = count;
+    }
+
+    private boolean crossesSegment(long offset, int length) {
+        return ((offset ^ (offset + length - 1)) >>> segmentShift) != 0;
+    }
+
+    private long readSplit(long offset, int length) {
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            int shift = (LITTLE_ENDIAN ? i : length - 1 - i) << 3;
+            value |= (readByte(offset + i) & 0xFFL) << shift;
+        }
+        return value;
+    }
+
+    private void writeSplit(long offset, long value, int length) {
+        for (int i = 0; i < length; i++) {
+            int shift = (LITTLE_ENDIAN ? i : length - 1 - i) << 3;
+            writeByte(offset + i, (byte) (value >>> shift));
+        }
+    }
+
+    @Override
+    public short readShort(long offset) {
+        return crossesSegment(offset, 2) ? (short) readSplit(offset, 2) : super.readShort(offset);
+    }
+
+    @Override
+    public int readInt(long offset) {
+        return crossesSegment(offset, 4) ? (int) readSplit(offset, 4) : super.readInt(offset);
+    }
+
+    @Override
+    public long readLong(long offset) {
+        return crossesSegment(offset, 8) ? readSplit(offset, 8) : super.readLong(offset);
+    }
+
+    @Override
+    public float readFloat(long offset) {
+        return Float.intBitsToFloat(readInt(offset));
+    }
+
+    @Override
+    public double readDouble(long offset) {
+        return Double.longBitsToDouble(readLong(offset));
+    }
+
+    @Override
+    public short readShort() {
+        return readShort(readOffsetPositionMoved(2));
+    }
+
+    @Override
+    public int readInt() {
+        return readInt(readOffsetPositionMoved(4));
+    }
+
+    @Override
+    public long readLong() {
+        return readLong(readOffsetPositionMoved(8));
+    }
+
+    @Override
+    public float readFloat() {
+        return readFloat(readOffsetPositionMoved(4));
+    }
+
+    @Override
+    public double readDouble() {
+        return readDouble(readOffsetPositionMoved(8));
+    }
+
+    @Override
+    public int readVolatileInt() {
+        return readVolatileInt(readOffsetPositionMoved(4));
+    }
+
+    @Override
+    public long readVolatileLong() {
+        return readVolatileLong(readOffsetPositionMoved(8));
+    }
+
+    @Override
+    public Bytes writeShort(long offset, short i) {
+        if (!crossesSegment(offset, 2))
+            return super.writeShort(offset, i);
+        writeSplit(offset, i, 2);
+        return this;
+    }
+
+    @Override
+    public Bytes writeInt(long offset, int i) {
+        if (!crossesSegment(offset, 4))
+            return super.writeInt(offset, i);
+        writeSplit(offset, i, 4);
+        return this;
+    }
+
+    @Override
+    public Bytes writeOrderedInt(long offset, int i) {
+        if (!crossesSegment(offset, 4))
+            return super.writeOrderedInt(offset, i);
+        writeSplit(offset, i, 4);
+        return this;
+    }
+
+    @Override
+    public Bytes writeLong(long offset, long i) {
+        if (!crossesSegment(offset, 8))
+            return super.writeLong(offset, i);
+        writeSplit(offset, i, 8);
+        return this;
+    }
+
+    @Override
+    public Bytes<Void> writeOrderedLong(long offset, long i) {
+        if (!crossesSegment(offset, 8))
+            return super.writeOrderedLong(offset, i);
+        writeSplit(offset, i, 8);
+        return this;
+    }
+
+    @Override
+    public Bytes writeFloat(long offset, float d) {
+        return writeInt(offset, Float.floatToRawIntBits(d));
+    }
+
+    @Override
+    public Bytes writeDouble(long offset, double d) {
+        return writeLong(offset, Double.doubleToRawLongBits(d));
+    }
+
+    @Override
+    public Bytes<Void> writeShort(short i16) {
+        writeShort(writeOffsetPositionMoved(2), i16);
+        return this;
+    }
+
+    @Override
+    public Bytes<Void> writeInt(int i) {
+        writeInt(writeOffsetPositionMoved(4), i);
+        return this;
+    }
+
+    @Override
+    public Bytes<Void> writeLong(long i64) {
+        writeLong(writeOffsetPositionMoved(8), i64);
+        return this;
+    }
+
+    @Override
+    public Bytes<Void> writeFloat(float f) {
+        writeFloat(writeOffsetPositionMoved(4), f);
+        return this;
+    }
+
+    @Override
+    public Bytes<Void> writeDouble(double d) {
+        writeDouble(writeOffsetPositionMoved(8), d);
+        return this;
+    }
+
+    @Override
+    public Bytes<Void> writeOrderedInt(int i) {
+        writeOrderedInt(writeOffsetPositionMoved(4), i);
+        return this;
+    }
+
+    @Override
+    public Bytes<Void> writeOrderedLong(long i) {
+        writeOrderedLong(writeOffsetPositionMoved(8), i);
+        return this;
+    }
+
+    @Override
+    public boolean compareAndSwapInt(long offset, int expected, int value) {
+        if (crossesSegment(offset, 4))
+            throw new IllegalArgumentException("Cannot CAS a value across segments at " + offset);
+        return super.compareAndSwapInt(offset, expected, value);
+    }
+
+    @Override
+    public boolean compareAndSwapLong(long offset, long expected, long value) {
+        if (crossesSegment(offset, 8))
+            throw new IllegalArgumentException("Cannot CAS a value across segments at " + offset);
+        return super.compareAndSwapLong(offset, expected, value);
+    }
+
+    @Override
+    protected void performRelease() {
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i].release();
+            segments[i] = null;
+        }
+        segmentCount = 0;
+        bytesStore = NoBytesStore.noBytesStore();
+    }
+
+    // a view of a zeroed block of memory covering the offsets start to start + size.
+    static final class Segment extends NativeBytesStore {
+        private final NativeBytesStore<Void> memory;
+        private final long start;
+
+        Segment(long start, long size) {
+            this(NativeBytesStore.nativeStoreWithFixedCapacity(size), start, size);
+        }
+
+        private Segment(NativeBytesStore<Void> memory, long start, long size) {
+            super(memory.address(), start + size, false);
+            this.memory = memory;
+            this.start = start;
+        }
+
+        @Override
+        public long start() {
+            return start;
+        }
+
+        @Override
+        protected void performRelease() {
+            super.performRelease();
+            memory.release();
+        }
+    }
+}
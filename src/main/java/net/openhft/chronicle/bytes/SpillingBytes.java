@@ -0,0 +1,176 @@
+/*
+ * Copyright 2015 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.bytes;
+
+import net.openhft.chronicle.core.OS;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+
+/**
+ * Elastic Bytes which starts in native memory and, once it would grow past a threshold, moves its content to a
+ * MappedFile on a temporary file and continues there. This bounds the native memory used by large buffers without
+ * making small buffers use a file.
+ * <p>
+ * The temporary file is deleted when these bytes are released.
+ */
+public class SpillingBytes extends ChunkedBytes {
+    public static final long DEFAULT_CHUNK_SIZE = 64 << 20;
+
+    private final long threshold;
+    private final long chunkSize;
+    private File file;
+    private MappedFile mappedFile;
+
+    SpillingBytes(long threshold, long chunkSize) {
+        super(NoBytesStore.noBytesStore());
+        if (threshold < 0)
+            throw new IllegalArgumentException("threshold: " + threshold);
+        this.threshold = threshold;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @param threshold the most native memory to use before moving to a temporary file.
+     */
+    public static SpillingBytes spillingBytes(long threshold) {
+        return new SpillingBytes(threshold, DEFAULT_CHUNK_SIZE);
+    }
+
+    public static SpillingBytes spillingBytes(long threshold, long chunkSize) {
+        return new SpillingBytes(threshold, chunkSize);
+    }
+
+    public boolean isSpilled() {
+        return mappedFile != null;
+    }
+
+    /**
+     * @return the temporary file, or null if the content is still in native memory.
+     */
+    public File file() {
+        return file;
+    }
+
+    @Override
+    public long capacity() {
+        return 1L << 40;
+    }
+
+    @Override
+    public long realCapacity() {
+        return mappedFile == null ? bytesStore.capacity() : capacity();
+    }
+
+    @Override
+    public long start() {
+        return 0L;
+    }
+
+    @Override
+    public boolean isElastic() {
+        return true;
+    }
+
+    @Override
+    public boolean isNative() {
+        return true;
+    }
+
+    @Override
+    public void ensureCapacity(long size) {
+        writeCheckOffset(size, 0);
+    }
+
+    @Override
+    protected void writeCheckOffset(long offset, long adding) {
+        if (bytesStore.inStore(offset) && offset + adding <= bytesStore.capacity())
+            return;
+        super.writeCheckOffset(offset, adding);
+        if (offset < 0)
+            throw new BufferUnderflowException();
+        long end = Math.max(offset + adding, offset + 1);
+        if (mappedFile == null) {
+            if (end <= threshold) {
+                resize(end);
+                return;
+            }
+            spill();
+        }
+        acquireChunk(offset);
+    }
+
+    @Override
+    protected void readCheckOffset(long offset, long adding) {
+        if (bytesStore.inStore(offset) && offset + adding <= bytesStore.capacity())
+            return;
+        super.readCheckOffset(offset, adding);
+        if (mappedFile != null)
+            acquireChunk(offset);
+        else if (adding > 0)
+            throw new BufferUnderflowException();
+    }
+
+    private void resize(long end) {
+        // grow by 50% rounded up to a whole page, but no more than the threshold.
+        long ps = OS.pageSize();
+        long size = Math.min(threshold, (Math.max(end, bytesStore.capacity() * 3 / 2) + ps - 1) & ~(ps - 1));
+        NativeBytesStore<Void> store = NativeBytesStore.nativeStoreWithFixedCapacity(size);
+        if (bytesStore.capacity() > 0)
+            bytesStore.copyTo(store);
+        bytesStore.release();
+        bytesStore = (BytesStore) store;
+    }
+
+    private void spill() {
+        BytesStore store = bytesStore;
+        try {
+            // not deleteOnExit(), which would hold every path spilled to until the JVM exits.
+            file = File.createTempFile("spill-", ".bytes");
+            mappedFile = new MappedFile(file, chunkSize, OS.pageSize());
+        } catch (IOException e) {
+            throw new IORuntimeException(e);
+        }
+        bytesStore = NoBytesStore.noBytesStore();
+        long length = store.capacity();
+        if (length > 0)
+            copyIn(0, NativeAccess.instance(), null, store.address(), length);
+        store.release();
+    }
+
+    private void acquireChunk(long offset) {
+        BytesStore oldBS = bytesStore;
+        try {
+            bytesStore = mappedFile.acquireByteStore(offset);
+            oldBS.release();
+        } catch (IOException e) {
+            throw new IORuntimeException(e);
+        }
+    }
+
+    @Override
+    protected void performRelease() {
+        super.performRelease();
+        if (mappedFile != null) {
+            mappedFile.close();
+            file.delete();
+        }
+    }
+}
@@ -109,6 +109,23 @@ public interface StreamingDataOutput<S extends StreamingDataOutput<S, A, AT>,
 
     S writeOrderedLong(long i);
 
+    /**
+     * Write zero bytes until the position is a multiple of alignment. For a store from
+     * {@link NativeBytesStore#alignedNativeStore(long, long)} this aligns the memory written next.
+     *
+     * @param alignment a power of 2
+     */
+    default S padToAlign(int alignment) {
+        if (Integer.bitCount(alignment) != 1)
+            throw new IllegalArgumentException("alignment must be a power of 2, was " + alignment);
+        long pad = -position() & (alignment - 1);
+        for (; pad >= 8; pad -= 8)
+            writeLong(0L);
+        for (; pad > 0; pad--)
+            writeByte((byte) 0);
+        return (S) this;
+    }
+
     // this "needless" override is needed for better erasure while accessing raw Bytes/BytesStore
     @Override
     A access();
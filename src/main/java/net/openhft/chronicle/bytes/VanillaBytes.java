@@ -76,14 +76,15 @@ public class VanillaBytes<Underlying> extends AbstractBytes<Underlying> implemen
     @Override
     public BytesStore<Bytes<Underlying>, Underlying> copy() {
         if (bytesStore.underlyingObject() instanceof ByteBuffer) {
-            ByteBuffer bb = ByteBuffer.allocateDirect(Maths.toInt32(remaining()));
+            NativeBytesStore<ByteBuffer> copy = NativeBytesStore.allocateDirect(Maths.toInt32(remaining()), false);
+            ByteBuffer bb = copy.underlyingObject();
             ByteBuffer bbu = (ByteBuffer) bytesStore.underlyingObject();
             ByteBuffer slice = bbu.slice();
             slice.position((int) position());
             slice.limit((int) limit());
             bb.put(slice);
             bb.clear();
-            return (BytesStore) BytesStore.wrap(bb);
+            return (BytesStore) copy;
 
         } else {
             return (BytesStore) NativeBytes.copyOf(this);
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.bytes;
+
+import java.util.concurrent.locks.LockSupport;
+
+public enum WaitStrategies implements WaitStrategy {
+    /**
+     * Lowest latency, uses a whole core while waiting.
+     */
+    BUSY_SPIN {
+        @Override
+        public void idle(int attempts) {
+        }
+    },
+    /**
+     * Gives up the core to other runnable threads between polls.
+     */
+    YIELD {
+        @Override
+        public void idle(int attempts) {
+            Thread.yield();
+        }
+    },
+    /**
+     * Busy spins, then yields, then parks for a doubling period up to MAX_PARK_NANOS, so a consumer which has been
+     * idle for a while stops using the CPU.
+     */
+    BACKOFF {
+        @Override
+        public void idle(int attempts) {
+            if (attempts < SPIN_ATTEMPTS)
+                return;
+            if (attempts < SPIN_ATTEMPTS + YIELD_ATTEMPTS) {
+                Thread.yield();
+                return;
+            }
+            int shift = Math.min(attempts - SPIN_ATTEMPTS - YIELD_ATTEMPTS, 20);
+            LockSupport.parkNanos(Math.min(1L << shift, MAX_PARK_NANOS));
+        }
+    },
+    /**
+     * Parks for a fixed period between polls.
+     */
+    TIMED_WAIT {
+        @Override
+        public void idle(int attempts) {
+            LockSupport.parkNanos(MAX_PARK_NANOS);
+        }
+    };
+
+    static final int SPIN_ATTEMPTS = 100;
+    static final int YIELD_ATTEMPTS = 100;
+    static final long MAX_PARK_NANOS = 1_000_000;
+}
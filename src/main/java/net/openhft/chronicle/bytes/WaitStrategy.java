@@ -0,0 +1,31 @@
+/*
+ * Copyright 2015 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.bytes;
+
+/**
+ * What a consumer does while it waits for more data.
+ */
+@FunctionalInterface
+public interface WaitStrategy {
+    /**
+     * Called each time a poll finds nothing to read.
+     *
+     * @param attempts the number of polls in a row which found nothing, starting at 0.
+     */
+    void idle(int attempts);
+}
@@ -79,6 +79,12 @@ public interface WriteAccess<T> extends AccessCommon<T> {
         if (this == sourceAccess && handle == source && offset == sourceOffset)
             return;
         long i = 0;
+        if (sourceAccess.byteOrder(source) != byteOrder(handle)) {
+            // copying a long at a time would swap the bytes.
+            for (; i < len; i++)
+                writeByte(handle, offset + i, sourceAccess.readByte(source, sourceOffset + i));
+            return;
+        }
         while (len - i >= 8L) {
             writeLong(handle, offset + i, sourceAccess.readLong(source, sourceOffset + i));
             i += 8L;
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2015 Higher Frequency Trading
+ *
+ * http://www.higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.bytes;
+
+import net.openhft.chronicle.core.Memory;
+import net.openhft.chronicle.core.OS;
+import net.openhft.chronicle.core.util.Closeable;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fixed capacity stores whose memory has already been zeroed and touched by a background thread, so allocating a
+ * zeroed store on a latency sensitive thread is O(1).
+ * <p>
+ * Capacities are rounded up to a power of 2 block between the minimum and maximum block sizes. Once a block size has
+ * been asked for, the background thread keeps blocksPerSize blocks of that size ready, and zeroes released blocks
+ * for reuse. If no block is ready, the caller allocates and zeroes one itself. Larger capacities are not pooled.
+ */
+public class ZeroedNativeBytesStorePool implements Closeable {
+    private static final Memory MEMORY = OS.memory();
+    private static final long IDLE_PARK_NANOS = 10_000_000;
+
+    private final int minShift;
+    private final long maxBlockSize;
+    private final int blocksPerSize;
+    private final ConcurrentLinkedQueue<Long>[] ready;
+    private final ConcurrentLinkedQueue<Long>[] dirty;
+    // the number of ready blocks, or -1 if the size is not in use yet.
+    private final AtomicIntegerArray readyCount;
+    private final Thread zeroer;
+    private volatile boolean closed = false;
+
+    private final LongAdder allocations = new LongAdder();
+    private final LongAdder readyHits = new LongAdder();
+    private final LongAdder blocksZeroed = new LongAdder();
+
+    /**
+     * @param minBlockSize  smallest block, a power of 2
+     * @param maxBlockSize  largest block, a power of 2
+     * @param blocksPerSize blocks of each size in use to keep ready.
+     */
+    public ZeroedNativeBytesStorePool(long minBlockSize, long maxBlockSize, int blocksPerSize) {
+        if (Long.bitCount(minBlockSize) != 1 || Long.bitCount(maxBlockSize) != 1 || minBlockSize > maxBlockSize)
+            throw new IllegalArgumentException("block sizes must be powers of 2, min: " + minBlockSize + " max: " + maxBlockSize);
+        this.minShift = Long.numberOfTrailingZeros(minBlockSize);
+        this.maxBlockSize = maxBlockSize;
+        this.blocksPerSize = blocksPerSize;
+        int sizes = Long.numberOfTrailingZeros(maxBlockSize) - minShift + 1;
+        ready = new ConcurrentLinkedQueue[sizes];
+        dirty = new ConcurrentLinkedQueue[sizes];
+        readyCount = new AtomicIntegerArray(sizes);
+        for (int i = 0; i < sizes; i++) {
+            ready[i] = new ConcurrentLinkedQueue<>();
+            dirty[i] = new ConcurrentLinkedQueue<>();
+            readyCount.set(i, -1);
+        }
+        zeroer = new Thread(this::zeroBlocks, "zeroer-" + minBlockSize + "-" + maxBlockSize);
+        zeroer.setDaemon(true);
+        zeroer.start();
+    }
+
+    int sizeClass(long capacity) {
+        if (capacity <= 1L << minShift)
+            return 0;
+        return 64 - Long.numberOfLeadingZeros(capacity - 1) - minShift;
+    }
+
+    long blockSize(int sizeClass) {
+        return 1L << (sizeClass + minShift);
+    }
+
+    /**
+     * @return a zeroed fixed capacity store which returns its memory to this pool on release.
+     */
+    public NativeBytesStore<Void> allocate(long capacity) {
+        if (capacity < 0)
+            throw new IllegalArgumentException("capacity: " + capacity);
+        if (capacity > maxBlockSize || closed)
+            return NativeBytesStore.nativeStoreWithFixedCapacity(capacity);
+        allocations.increment();
+        int sizeClass = sizeClass(capacity);
+        Long address = ready[sizeClass].poll();
+        long block;
+        if (address == null) {
+            // start keeping blocks of this size ready.
+            readyCount.compareAndSet(sizeClass, -1, 0);
+            block = OffHeapAccounting.allocateNative(blockSize(sizeClass));
+            MEMORY.setMemory(block, blockSize(sizeClass), (byte) 0);
+        } else {
+            readyCount.decrementAndGet(sizeClass);
+            readyHits.increment();
+            block = address;
+        }
+        LockSupport.unpark(zeroer);
+        return new ZeroedNativeBytesStore(this, block, capacity, sizeClass);
+    }
+
+    void free(long address, int sizeClass) {
+        if (closed) {
+            OffHeapAccounting.freeNative(address, blockSize(sizeClass));
+            return;
+        }
+        dirty[sizeClass].add(address);
+        // close() may have freed the dirty blocks since the check above, if so whichever removes it frees it.
+        if (closed && dirty[sizeClass].remove(address)) {
+            OffHeapAccounting.freeNative(address, blockSize(sizeClass));
+            return;
+        }
+        LockSupport.unpark(zeroer);
+    }
+
+    private void zeroBlocks() {
+        while (!closed) {
+            boolean busy = false;
+            for (int i = 0; i < ready.length && !closed; i++) {
+                if (readyCount.get(i) < 0)
+                    continue;
+                long blockSize = blockSize(i);
+                Long address;
+                while ((address = dirty[i].poll()) != null) {
+                    busy = true;
+                    if (readyCount.get(i) >= blocksPerSize) {
+                        OffHeapAccounting.freeNative(address, blockSize);
+                        continue;
+                    }
+                    addReady(i, address, blockSize);
+                }
+                while (readyCount.get(i) < blocksPerSize && !closed) {
+                    busy = true;
+                    addReady(i, OffHeapAccounting.allocateNative(blockSize), blockSize);
+                }
+            }
+            if (!busy)
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+        }
+    }
+
+    private void addReady(int sizeClass, long address, long blockSize) {
+        // zeroing also touches every page so the caller doesn't take the page faults.
+        MEMORY.setMemory(address, blockSize, (byte) 0);
+        MEMORY.storeFence();
+        blocksZeroed.increment();
+        ready[sizeClass].add(address);
+        readyCount.incrementAndGet(sizeClass);
+    }
+
+    private void freeAll() {
+        for (int i = 0; i < ready.length; i++) {
+            Long address;
+            while ((address = ready[i].poll()) != null)
+                OffHeapAccounting.freeNative(address, blockSize(i));
+            while ((address = dirty[i].poll()) != null)
+                OffHeapAccounting.freeNative(address, blockSize(i));
+        }
+    }
+
+    /**
+     * Stop the background thread and free the blocks not in use. Stores released later free their memory.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(zeroer);
+        try {
+            zeroer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        freeAll();
+    }
+
+    /**
+     * @return the number of pooled stores allocated.
+     */
+    public long allocations() {
+        return allocations.sum();
+    }
+
+    /**
+     * @return the number of allocations which found a block ready, the rest were zeroed by the caller.
+     */
+    public long readyHits() {
+        return readyHits.sum();
+    }
+
+    /**
+     * @return the number of blocks zeroed by the background thread.
+     */
+    public long blocksZeroed() {
+        return blocksZeroed.sum();
+    }
+
+    /**
+     * @return the number of blocks of the size which would be used for capacity, ready to be allocated.
+     */
+    public int readyBlocks(long capacity) {
+        return Math.max(0, readyCount.get(sizeClass(capacity)));
+    }
+
+    static final class ZeroedNativeBytesStore extends NativeBytesStore<Void> {
+        private final ZeroedNativeBytesStorePool pool;
+        private final int sizeClass;
+
+        ZeroedNativeBytesStore(ZeroedNativeBytesStorePool pool, long address, long capacity, int sizeClass) {
+            super(address, capacity, false);
+            this.pool = pool;
+            this.sizeClass = sizeClass;
+            trackingId = OffHeapAccounting.track(this, OffHeapAccounting.MemoryType.NATIVE, capacity);
+        }
+
+        @Override
+        protected void performRelease() {
+            super.performRelease();
+            pool.free(address, sizeClass);
+        }
+    }
+}
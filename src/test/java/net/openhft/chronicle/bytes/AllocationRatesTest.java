@@ -18,11 +18,21 @@
 
 package net.openhft.chronicle.bytes;
 
+import net.openhft.chronicle.bytes.OffHeapAccounting.MemoryType;
 import org.junit.Test;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 
 /**
  * User: peter.lawrey Date: 24/12/13 Time: 19:43
@@ -45,8 +55,11 @@ public class AllocationRatesTest {
             long timeHBB = timeHeapByteBufferAllocations();
             long timeDBB = timeDirectByteBufferAllocations();
             long timeDS = timeDirectStoreAllocations();
-            System.out.printf("buffers %d KB took an average of %,d ns for heap ByteBuffer, %,d ns for direct ByteBuffer and %,d for DirectStore%n",
-                    BUFFER_SIZE / 1024, timeHBB / ALLOCATIONS, timeDBB / ALLOCATIONS, timeDS / ALLOCATIONS);
+            long timePS = timePooledStoreAllocations(false);
+            long timePSZ = timePooledStoreAllocations(true);
+            // the lazy DirectStore is only zeroed below 128 KB, pooled blocks are not zeroed unless asked.
+            System.out.printf("buffers %d KB took an average of %,d ns for heap ByteBuffer, %,d ns for direct ByteBuffer, %,d for lazy DirectStore, %,d for pooled DirectStore and %,d for pooled DirectStore zeroed%n",
+                    BUFFER_SIZE / 1024, timeHBB / ALLOCATIONS, timeDBB / ALLOCATIONS, timeDS / ALLOCATIONS, timePS / ALLOCATIONS, timePSZ / ALLOCATIONS);
         }
     }
 
@@ -83,4 +96,198 @@ public class AllocationRatesTest {
         }
         return System.nanoTime() - start;
     }
+
+    private long timePooledStoreAllocations(boolean zeroed) {
+        long start = System.nanoTime();
+        for (int i = 0; i < ALLOCATIONS; i += BATCH) {
+            NativeBytesStore[] ds = new NativeBytesStore[BATCH];
+            for (int j = 0; j < BATCH; j++) {
+                ds[j] = NativeBytesStore.pooledNativeStoreWithFixedCapacity(BUFFER_SIZE);
+                if (zeroed)
+                    ds[j].zeroOut(0, BUFFER_SIZE);
+            }
+            for (int j = 0; j < BATCH; j++) {
+                ds[j].release();
+                assertEquals(0, ds[j].refCount());
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    @Test
+    public void pooledStoresAreReused() {
+        NativeBytesStorePool pool = new NativeBytesStorePool(2, 2);
+        NativeBytesStore[] ds = new NativeBytesStore[5];
+        for (int j = 0; j < ds.length; j++) {
+            ds[j] = pool.allocate(1000);
+            assertEquals(1000, ds[j].capacity());
+            ds[j].writeLong(992, j);
+        }
+        assertEquals(5, pool.nativeAllocations());
+        for (NativeBytesStore store : ds)
+            store.release();
+        // 2 in the thread cache, 2 in the shared cache and 1 freed.
+        assertEquals(1, pool.nativeFrees());
+
+        for (int j = 0; j < 4; j++)
+            ds[j] = pool.allocate(600 + j);
+        assertEquals(2, pool.threadCacheHits());
+        assertEquals(2, pool.sharedCacheHits());
+        assertEquals(5, pool.nativeAllocations());
+
+        // a different size class is not shared.
+        pool.allocate(64).release();
+        assertEquals(6, pool.nativeAllocations());
+
+        for (int j = 0; j < 4; j++)
+            ds[j].release();
+        pool.trim();
+        assertEquals(6, pool.nativeAllocations());
+        assertEquals(6, pool.nativeFrees());
+        assertEquals(10, pool.allocations());
+    }
+
+    @Test
+    public void pooledBlocksAreReclaimed() throws InterruptedException {
+        NativeBytesStorePool pool = new NativeBytesStorePool(2, 4);
+        // blocks left in the cache of a thread which dies go to the shared cache.
+        Thread thread = new Thread(() -> {
+            NativeBytesStore a = pool.allocate(1000), b = pool.allocate(1000);
+            a.release();
+            b.release();
+        });
+        thread.start();
+        thread.join();
+        // a store which is never released returns its block too.
+        pool.allocate(1000).writeLong(0, 1L);
+        assertEquals(3, pool.nativeAllocations());
+
+        List<NativeBytesStore> stores = new ArrayList<>();
+        for (int i = 0; i < 100 && pool.sharedCacheHits() < 3; i++) {
+            System.gc();
+            Thread.sleep(10);
+            // this thread's cache stays empty so these come from the shared cache once the blocks are there.
+            stores.add(pool.allocate(1000));
+        }
+        assertEquals(3, pool.sharedCacheHits());
+        assertEquals(0, pool.nativeFrees());
+        for (NativeBytesStore store : stores)
+            store.release();
+    }
+
+    @Test
+    public void zeroedStoresArePrepared() throws InterruptedException {
+        int size = 4 << 20;
+        try (ZeroedNativeBytesStorePool pool = new ZeroedNativeBytesStorePool(1 << 20, 16 << 20, 4)) {
+            // the first allocation of a size is zeroed by the caller.
+            NativeBytesStore store = pool.allocate(size);
+            assertEquals(0, pool.readyHits());
+            store.writeLong(size - 8, -1L);
+            store.release();
+            for (int i = 0; i < 100 && pool.readyBlocks(size) < 4; i++)
+                Thread.sleep(10);
+            assertEquals(4, pool.readyBlocks(size));
+
+            long start = System.nanoTime();
+            NativeBytesStore[] ds = new NativeBytesStore[4];
+            for (int j = 0; j < ds.length; j++)
+                ds[j] = pool.allocate(size);
+            long time = System.nanoTime() - start;
+            for (NativeBytesStore d : ds) {
+                assertEquals(0L, d.readLong(size - 8));
+                d.release();
+            }
+            assertEquals(4, pool.readyHits());
+            assertTrue(pool.blocksZeroed() >= 4);
+
+            start = System.nanoTime();
+            for (int j = 0; j < ds.length; j++)
+                ds[j] = NativeBytesStore.nativeStoreWithFixedCapacity(size);
+            long time2 = System.nanoTime() - start;
+            for (NativeBytesStore d : ds)
+                d.release();
+            System.out.printf("zeroed %d MB stores took an average of %,d ns from the pool and %,d ns zeroed by the caller%n",
+                    size >> 20, time / ds.length, time2 / ds.length);
+        }
+    }
+
+    @Test
+    public void zeroedStoresReleasedDuringCloseAreFreed() throws Exception {
+        OffHeapAccounting accounting = OffHeapAccounting.instance();
+        long outstanding = accounting.bytesAllocated(MemoryType.NATIVE) - accounting.bytesFreed(MemoryType.NATIVE);
+        int threads = 4, stores = 64;
+        ExecutorService es = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 200; round++) {
+                ZeroedNativeBytesStorePool pool = new ZeroedNativeBytesStorePool(4 << 10, 4 << 10, 1);
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    NativeBytesStore[] ds = new NativeBytesStore[stores];
+                    for (int j = 0; j < stores; j++)
+                        ds[j] = pool.allocate(4 << 10);
+                    futures.add(es.submit(() -> {
+                        start.await();
+                        for (NativeBytesStore d : ds)
+                            d.release();
+                        return null;
+                    }));
+                }
+                start.countDown();
+                pool.close();
+                for (Future<?> future : futures)
+                    future.get();
+            }
+        } finally {
+            es.shutdown();
+        }
+        // every block is freed whether it was released before or after close(), other stores may be cleaned meanwhile.
+        long leaked = accounting.bytesAllocated(MemoryType.NATIVE) - accounting.bytesFreed(MemoryType.NATIVE) - outstanding;
+        assertTrue("leaked " + leaked, leaked <= 0);
+    }
+
+    @Test
+    public void pooledBytesAreReused() throws InterruptedException {
+        BytesPool pool = new BytesPool(2, 2);
+        Bytes<Void> first;
+        try (PooledBytes pb = pool.borrow(100)) {
+            first = pb.bytes();
+            assertEquals(128, first.realCapacity());
+            first.writeLong(1L);
+        }
+        for (int i = 0; i < 1000; i++) {
+            try (PooledBytes pb = pool.borrow(128)) {
+                assertSame(first, pb.bytes());
+                assertEquals(0, pb.bytes().position());
+                pb.bytes().writeLong(i);
+            }
+        }
+        assertEquals(1, pool.created());
+        assertEquals(1000, pool.threadCacheHits());
+
+        // Bytes returned by another thread come from the shared cache.
+        PooledBytes pb = pool.borrow(128);
+        PooledBytes pb2 = pool.borrow(128);
+        PooledBytes pb3 = pool.borrow(128);
+        Thread t = new Thread(() -> {
+            pb.close();
+            pb2.close();
+            pb3.close();
+        });
+        t.start();
+        t.join();
+        assertEquals(0, pool.discarded());
+        // the shared cache holds two, the third stays with t.
+        PooledBytes pb4 = pool.borrow(128);
+        PooledBytes pb5 = pool.borrow(128);
+        assertEquals(2, pool.sharedCacheHits());
+        assertEquals(1001, pool.threadCacheHits());
+        pb4.close();
+        pb5.close();
+        try {
+            pb.close();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
 }
@@ -28,6 +28,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Random;
 import java.util.zip.GZIPInputStream;
@@ -188,6 +189,68 @@ public class ByteStoreTest {
         Assert.assertEquals("", sb.toString());
     }
 
+    @Test
+    public void testWriteReadLatin1UTFΔ() {
+        String[] words = {"0123456789abcdefghijklmnopqrstuvwxyz", "caf\u00e9 cr\u00e8me br\u00fbl\u00e9e", "\u00ff", "12345678\u20ac"};
+        for (String word : words)
+            bytes.writeUTFΔ(word);
+        long end = bytes.position();
+        bytes.position(0);
+        for (String word : words) {
+            long utfLength = word.getBytes(StandardCharsets.UTF_8).length;
+            assertEquals(utfLength, BytesUtil.findUTFLength(word));
+            assertEquals(word, bytes.readUTFΔ());
+        }
+        assertEquals(end, bytes.position());
+
+        byte[] array = new byte[40];
+        BytesUtil.appendUTF(NativeAccess.instance(), array, ArrayAccessors.BYTE_BASE, words[1], 2, 10);
+        assertEquals(words[1].substring(2, 12), new String(array, 0, 12, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testCompactStringsDetected() throws NoSuchFieldException {
+        boolean byteValue = String.class.getDeclaredField("value").getType() == byte[].class;
+        assertEquals(byteValue, CompactStringAccessor.COMPACT_STRINGS);
+        String word = "caf\u00e9 cr\u00e8me";
+        if (CompactStringAccessor.isLatin1(word))
+            Assert.assertArrayEquals(word.getBytes(StandardCharsets.ISO_8859_1), CompactStringAccessor.INSTANCE.handle(word));
+        Assert.assertFalse(CompactStringAccessor.isLatin1("12345678\u20ac"));
+    }
+
+    @Test
+    public void testLatin1UTFMatchesCharAt() {
+        // pass the Latin-1 bytes directly so this doesn't need compact strings.
+        char[] chars = new char[40];
+        Arrays.fill(chars, 'a');
+        for (int pos = 0; pos < chars.length; pos++) {
+            chars[pos] = (char) (0x80 + pos);
+            String word = new String(chars);
+            byte[] latin1 = word.getBytes(StandardCharsets.ISO_8859_1);
+            assertEquals(BytesUtil.findUTFLength(null, word), BytesUtil.findUTFLength(latin1, word));
+            for (int offset = 0; offset < 10; offset++) {
+                int length = chars.length - offset * 3;
+                byte[] expected = word.substring(offset, offset + length).getBytes(StandardCharsets.UTF_8);
+
+                bytes.clear();
+                BytesUtil.appendUTF(bytes, latin1, word, offset, length);
+                byte[] actual = new byte[expected.length];
+                bytes.flip();
+                bytes.read(actual);
+                Assert.assertArrayEquals(expected, actual);
+                assertEquals(0, bytes.remaining());
+
+                byte[] array = new byte[expected.length];
+                byte[] fallback = new byte[expected.length];
+                BytesUtil.appendUTF(NativeAccess.instance(), array, ArrayAccessors.BYTE_BASE, latin1, word, offset, length);
+                BytesUtil.appendUTF(NativeAccess.instance(), fallback, ArrayAccessors.BYTE_BASE, null, word, offset, length);
+                Assert.assertArrayEquals(fallback, array);
+                Assert.assertArrayEquals(expected, array);
+            }
+            chars[pos] = 'a';
+        }
+    }
+
     @Test
     public void testWriteReadUTF() {
         String[] words = "Hello,World!,Bye£€!".split(",");
@@ -20,10 +20,22 @@ package net.openhft.chronicle.bytes;
 
 import org.junit.Test;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class BytesTest {
     @Test
@@ -131,4 +143,217 @@ public class BytesTest {
         bbb.writeUnsignedByte(10, '0');
         assertEquals("[pos: 0, lim: 12, cap: 12 ] efghijklmnop", copy.toString());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testLeakDetection() throws InterruptedException {
+        long leaks = BytesLeakDetector.leaks();
+        BytesLeakDetector.track(new Object()).released();
+        BytesLeakDetector.track(new Object());
+        for (int i = 0; i < 100 && BytesLeakDetector.leaks() == leaks; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals(leaks + 1, BytesLeakDetector.leaks());
+    }
+
+    @Test
+    public void testElasticHeapBytes() {
+        Bytes<byte[]> bytes = Bytes.elasticHeapBytes();
+        assertTrue(bytes.isElastic());
+        assertFalse(bytes.isNative());
+        byte[] data = new byte[100];
+        for (int i = 0; i < data.length; i++)
+            data[i] = (byte) i;
+        for (int i = 0; i < 100; i++) {
+            bytes.writeLong(i);
+            bytes.write(data);
+        }
+        bytes.write(Bytes.wrap("Hello".getBytes()));
+        bytes.write((Bytes) NativeBytes.copyOf(Bytes.wrap(" World".getBytes())));
+        assertTrue(bytes.realCapacity() >= 100 * 108 + 11);
+
+        bytes.flip();
+        byte[] data2 = new byte[100];
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, bytes.readLong());
+            bytes.read(data2);
+            assertArrayEquals(data, data2);
+        }
+        assertEquals("Hello World", bytes.toString());
+    }
+
+    @Test
+    public void testContentHash() throws IOException {
+        // xxHash64 reference values
+        assertEquals(0xEF46DB3751D8E999L, Bytes.wrap(new byte[0]).hash(0, 0));
+        assertEquals(0x44BC2CF5AD770999L, Bytes.wrap("abc".getBytes()).hash(0, 3));
+
+        File tmp = File.createTempFile("testContentHash", ".bin");
+        tmp.deleteOnExit();
+        MappedBytes mapped = MappedBytes.mappedBytes(tmp, 64);
+        SegmentedBytes segmented = SegmentedBytes.segmentedBytes(64);
+        Bytes<Void> nativeBytes = NativeBytes.nativeBytes();
+        Bytes<byte[]> heapBytes = HeapBytes.heapBytes();
+        Bytes<ByteBuffer> bigEndian = Bytes.wrap(ByteBuffer.allocate(300).order(ByteOrder.BIG_ENDIAN));
+        Bytes[] all = {mapped, segmented, nativeBytes, heapBytes, bigEndian};
+        for (int i = 0; i < 257; i++)
+            for (Bytes b : all)
+                b.writeByte((byte) (i * 31));
+        for (Bytes b : all)
+            b.flip();
+
+        long hash = nativeBytes.hash(0, 257);
+        Map<Bytes, String> map = new HashMap<>();
+        map.put(nativeBytes, "native");
+        for (Bytes b : all) {
+            assertEquals(hash, b.hash(0, 257));
+            assertEquals(nativeBytes, b);
+            assertEquals(nativeBytes.hashCode(), b.hashCode());
+            assertEquals("native", map.get(b));
+        }
+        nativeBytes.skip(1);
+        assertNotEquals(hash, nativeBytes.hash(1, 256));
+        assertNotEquals(heapBytes.hashCode(), nativeBytes.hashCode());
+        mapped.release();
+    }
+
+    @Test
+    public void testHashCodeOfUnflippedElasticBytes() {
+        Bytes<Void> nativeBytes = NativeBytes.nativeBytes();
+        Bytes<byte[]> heapBytes = HeapBytes.heapBytes();
+        nativeBytes.writeLong(1);
+        heapBytes.writeLong(1);
+        // the limit is the capacity() so only the memory allocated is hashed and compared.
+        assertEquals(1L << 40, nativeBytes.limit());
+        nativeBytes.position(0);
+        heapBytes.position(0);
+        long hash = nativeBytes.hash(0, nativeBytes.realCapacity());
+        assertEquals((int) (hash ^ (hash >>> 32)), nativeBytes.hashCode());
+        hash = heapBytes.hash(0, heapBytes.realCapacity());
+        assertEquals((int) (hash ^ (hash >>> 32)), heapBytes.hashCode());
+        assertEquals(nativeBytes, nativeBytes);
+        assertEquals(heapBytes, heapBytes);
+        nativeBytes.release();
+    }
+
+    @Test
+    public void testMismatchAndCompare() {
+        int len = 101;
+        NativeBytesStore<Void> nativeStore = NativeBytesStore.nativeStoreWithFixedCapacity(len);
+        BytesStore heapStore = BytesStore.wrap(new byte[len]);
+        BytesStore bigEndian = BytesStore.wrap(ByteBuffer.allocate(len).order(ByteOrder.BIG_ENDIAN));
+        SegmentedBytes segmented = SegmentedBytes.segmentedBytes(64);
+        for (int i = 0; i < len; i++) {
+            nativeStore.writeByte(i, (byte) i);
+            heapStore.writeByte(i, (byte) i);
+            bigEndian.writeByte(i, (byte) i);
+            segmented.writeByte((byte) i);
+        }
+        BytesStore[] others = {heapStore, bigEndian, segmented};
+        for (BytesStore other : others) {
+            assertEquals(-1, nativeStore.mismatch(0, other, 0, len));
+            assertEquals(0, nativeStore.compare(0, len, other, 0, len));
+            assertTrue(nativeStore.compare(0, len - 1, other, 0, len) < 0);
+            assertTrue(nativeStore.compare(1, 3, other, 0, len) > 0);
+        }
+        for (int i = 0; i < len; i++) {
+            // unsigned so 0x80 is more than 0x7F
+            nativeStore.writeByte(i, (byte) 0x80);
+            for (BytesStore other : others) {
+                other.writeByte(i, (byte) 0x7F);
+                assertEquals(i, nativeStore.mismatch(0, other, 0, len));
+                assertEquals(i, other.mismatch(0, nativeStore, 0, len));
+                assertTrue(nativeStore.compare(0, len, other, 0, len) > 0);
+                assertTrue(other.compare(0, len, nativeStore, 0, len) < 0);
+                other.writeByte(i, (byte) i);
+            }
+            nativeStore.writeByte(i, (byte) i);
+        }
+        nativeStore.release();
+        segmented.release();
+    }
+
+    @Test
+    public void testMismatchAndCompareRangeChecked() {
+        int len = 64;
+        NativeBytesStore<Void> nativeStore = NativeBytesStore.nativeStoreWithFixedCapacity(len);
+        BytesStore heapStore = BytesStore.wrap(new byte[len]);
+        // elastic so the capacity() is more than the memory allocated.
+        Bytes elastic = NativeBytes.nativeBytes();
+        elastic.write(new byte[len]);
+        assertEquals(-1, nativeStore.mismatch(0, heapStore, 0, len));
+        assertEquals(-1, elastic.mismatch(0, heapStore, 0, len));
+        assertEquals(0, heapStore.compare(1, len - 1, nativeStore, 1, len - 1));
+        assertUnderflow(() -> nativeStore.mismatch(1, heapStore, 0, len));
+        assertUnderflow(() -> nativeStore.mismatch(0, heapStore, 1, len));
+        assertUnderflow(() -> nativeStore.mismatch(-1, heapStore, 0, 1));
+        assertUnderflow(() -> elastic.mismatch(0, heapStore, 0, elastic.realCapacity() + 1));
+        assertUnderflow(() -> heapStore.mismatch(0, elastic, elastic.realCapacity(), 1));
+        assertUnderflow(() -> nativeStore.compare(0, len + 1, heapStore, 0, len));
+        assertUnderflow(() -> nativeStore.compare(0, len, heapStore, len, 1));
+        assertUnderflow(() -> nativeStore.compare(0, len, elastic, 0, elastic.capacity()));
+        nativeStore.release();
+        elastic.release();
+    }
+
+    private static void assertUnderflow(Runnable runnable) {
+        try {
+            runnable.run();
+            fail("Expected BufferUnderflowException");
+        } catch (BufferUnderflowException expected) {
+        }
+    }
+
+    @Test
+    public void testIndexOf() {
+        int len = 150;
+        NativeBytesStore<Void> nativeStore = NativeBytesStore.nativeStoreWithFixedCapacity(len);
+        BytesStore heapStore = BytesStore.wrap(new byte[len]);
+        BytesStore bigEndian = BytesStore.wrap(ByteBuffer.allocate(len).order(ByteOrder.BIG_ENDIAN));
+        SegmentedBytes segmented = SegmentedBytes.segmentedBytes(64);
+        Random rand = new Random(1);
+        byte[] data = new byte[len];
+        for (int i = 0; i < len; i++) {
+            // few values so most bytes are found, including 0x80 and 0x01 next to 0.
+            byte b = (byte) (rand.nextInt(5) - 2 << 7 >> 1);
+            data[i] = b;
+            nativeStore.writeByte(i, b);
+            heapStore.writeByte(i, b);
+            bigEndian.writeByte(i, b);
+            segmented.writeByte(b);
+        }
+        BytesStore[] all = {nativeStore, heapStore, bigEndian, segmented};
+        for (int b = -128; b < 128; b += 64) {
+            for (int from = 0; from < 20; from++) {
+                for (int to = len - 20; to <= len; to++) {
+                    long first = -1, last = -1;
+                    for (int i = from; i < to; i++) {
+                        if (data[i] == b) {
+                            if (first < 0) first = i;
+                            last = i;
+                        }
+                    }
+                    for (BytesStore store : all) {
+                        assertEquals(first, store.indexOf((byte) b, from, to));
+                        assertEquals(last, store.lastIndexOf((byte) b, from, to));
+                    }
+                }
+            }
+        }
+        for (BytesStore store : all) {
+            assertEquals(37, store.indexOf(Bytes.wrap(Arrays.copyOfRange(data, 37, 50)), 0, len));
+            assertEquals(140, store.indexOf(Bytes.wrap(Arrays.copyOfRange(data, 140, 150)), 100, len));
+            assertEquals(-1, store.indexOf(Bytes.wrap(Arrays.copyOfRange(data, 140, 150)), 100, len - 1));
+        }
+
+        Bytes<byte[]> text = Bytes.wrap("GET /index.html HTTP/1.1\r\nHost: x\r\n\r\nbody".getBytes());
+        assertEquals(24, text.indexOf((byte) '\r'));
+        assertEquals(35, text.lastIndexOf((byte) '\r'));
+        assertEquals(33, text.indexOf(Bytes.wrap("\r\n\r\n".getBytes())));
+        text.position(25);
+        assertEquals(-1, text.indexOf((byte) '/'));
+        assertEquals(-1, text.indexOf(Bytes.wrap("HTTP".getBytes())));
+        nativeStore.release();
+        segmented.release();
+    }
+}
@@ -24,7 +24,23 @@ import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.assertEquals;
 
@@ -35,7 +51,7 @@ public class MappedFileTest {
         File tmp = File.createTempFile("testReferenceCounts", ".bin");
         tmp.deleteOnExit();
         int chunkSize = OS.isWindows() ? 64 << 10 : 4 << 10;
-        MappedFile mf = MappedFile.mappedFile(tmp.getName(), chunkSize, 0);
+        MappedFile mf = MappedFile.mappedFile(tmp, chunkSize, 0);
         assertEquals("refCount: 1", mf.referenceCounts());
 
         MappedBytesStore bs = mf.acquireByteStore(chunkSize + (1 << 10));
@@ -84,4 +100,538 @@ public class MappedFileTest {
         assertEquals(0, mf.refCount());
         assertEquals("refCount: 0, 0, 0", mf.referenceCounts());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testConcurrentAcquire() throws Exception {
+        File tmp = File.createTempFile("testConcurrentAcquire", ".bin");
+        tmp.deleteOnExit();
+        int chunkSize = OS.isWindows() ? 64 << 10 : 4 << 10;
+        MappedFile mf = MappedFile.mappedFile(tmp, chunkSize, 0);
+        int threads = 4, chunks = 40;
+        ExecutorService es = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(es.submit(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        long position = (long) (i % chunks) * chunkSize;
+                        MappedBytesStore mbs = mf.acquireByteStore(position);
+                        assertEquals(position, mbs.start());
+                        mbs.release();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get();
+        } finally {
+            es.shutdown();
+        }
+        // one reservation per chunk held by the MappedFile.
+        for (int i = 0; i < chunks; i++) {
+            MappedBytesStore mbs = mf.acquireByteStore((long) i * chunkSize);
+            assertEquals(2, mbs.refCount());
+            mbs.release();
+        }
+        mf.close();
+        assertEquals(0, mf.refCount());
+    }
+
+    @Test
+    public void testPremapNextChunk() throws Exception {
+        File tmp = File.createTempFile("testPremapNextChunk", ".bin");
+        tmp.deleteOnExit();
+        int chunkSize = OS.isWindows() ? 64 << 10 : 4 << 10;
+        MappedFile mf = MappedFile.mappedFile(tmp, chunkSize, 0)
+                .premapNextChunk(chunkSize / 2);
+        Bytes bytes = mf.bytes();
+        bytes.writeLong(0L);
+        // not past the threshold yet.
+        Thread.sleep(20);
+        assertEquals("refCount: 2, 2", mf.referenceCounts());
+
+        while (bytes.position() <= chunkSize / 2)
+            bytes.writeLong(bytes.position());
+        for (int i = 0; i < 100 && !mf.referenceCounts().equals("refCount: 3, 2, 2"); i++)
+            Thread.sleep(10);
+        // the next chunk is held by the pre-mapper
+        assertEquals("refCount: 3, 2, 2", mf.referenceCounts());
+
+        while (bytes.position() < chunkSize + 8)
+            bytes.writeLong(bytes.position());
+        assertEquals(chunkSize, bytes.readLong(chunkSize));
+        bytes.release();
+        assertEquals(0, mf.refCount());
+    }
+
+    @Test
+    public void testReadOnly() throws Exception {
+        File tmp = File.createTempFile("testReadOnly", ".bin");
+        tmp.deleteOnExit();
+        int chunkSize = OS.isWindows() ? 64 << 10 : 4 << 10;
+        MappedFile writer = MappedFile.mappedFile(tmp, chunkSize, 0);
+        MappedBytesStore wbs = writer.acquireByteStore(0);
+        wbs.writeLong(8, 0x1234L);
+        assertEquals(chunkSize, tmp.length());
+
+        Bytes reader = MappedBytes.readOnlyMappedBytes(tmp, chunkSize);
+        assertEquals(0x1234L, reader.readLong(8));
+        try {
+            reader.writeLong(8, 1L);
+            Assert.fail();
+        } catch (ReadOnlyBufferException e) {
+            // expected
+        }
+        try {
+            reader.readLong(chunkSize);
+            Assert.fail();
+        } catch (BufferUnderflowException e) {
+            // expected
+        }
+        // the reader doesn't grow the file.
+        assertEquals(chunkSize, tmp.length());
+
+        // once the writer extends the file the reader can see it.
+        MappedBytesStore wbs2 = writer.acquireByteStore(chunkSize);
+        wbs2.writeLong(chunkSize, 0x5678L);
+        assertEquals(0x5678L, reader.readLong(chunkSize));
+
+        reader.release();
+        wbs.release();
+        wbs2.release();
+        writer.close();
+        assertEquals(0, writer.refCount());
+    }
+
+    @Test
+    public void testMaxLiveChunks() throws IOException {
+        File tmp = File.createTempFile("testMaxLiveChunks", ".bin");
+        tmp.deleteOnExit();
+        int chunkSize = OS.isWindows() ? 64 << 10 : 4 << 10;
+        MappedFile mf = MappedFile.mappedFile(tmp, chunkSize, 0)
+                .maxLiveChunks(2);
+        // held for the whole test so it can't be unmapped.
+        MappedBytesStore held = mf.acquireByteStore(0);
+        held.writeLong(0, 1L);
+        for (int i = 1; i <= 4; i++) {
+            MappedBytesStore mbs = mf.acquireByteStore((long) i * chunkSize);
+            mbs.writeLong((long) i * chunkSize, i);
+            mbs.release();
+            Assert.assertTrue(mf.liveChunks() <= 2);
+        }
+        assertEquals(2, mf.liveChunks());
+        assertEquals(3, mf.evictedChunks());
+        assertEquals("refCount: 3, 2, 0, 0, 0, 1", mf.referenceCounts());
+        assertEquals(1L, held.readLong(0));
+
+        // re-mapping an evicted chunk sees the data written.
+        MappedBytesStore mbs = mf.acquireByteStore(chunkSize);
+        assertEquals(1L, mbs.readLong(chunkSize));
+        mbs.release();
+        held.release();
+        mf.close();
+        assertEquals(0, mf.refCount());
+    }
+
+    @Test
+    public void testEvictionWithConcurrentAcquires() throws Exception {
+        File tmp = File.createTempFile("testEvictionWithConcurrentAcquires", ".bin");
+        tmp.deleteOnExit();
+        int chunkSize = OS.isWindows() ? 64 << 10 : 4 << 10;
+        int chunks = 8;
+        MappedFile mf = MappedFile.mappedFile(tmp, chunkSize, 0)
+                .maxLiveChunks(2);
+        AtomicReference<Throwable> failed = new AtomicReference<>();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int seed = t;
+            threads[t] = new Thread(() -> {
+                try {
+                    Random rand = new Random(seed);
+                    for (int i = 0; i < 20000 && failed.get() == null; i++) {
+                        int chunk = rand.nextInt(chunks);
+                        long offset = (long) chunk * chunkSize;
+                        MappedBytesStore mbs = mf.acquireByteStore(offset);
+                        mbs.writeLong(offset, chunk);
+                        assertEquals(chunk, mbs.readLong(offset));
+                        mbs.release();
+                    }
+                } catch (Throwable e) {
+                    failed.compareAndSet(null, e);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        if (failed.get() != null)
+            throw new AssertionError(failed.get());
+        Assert.assertTrue(mf.evictedChunks() > 0);
+        mf.close();
+        assertEquals(0, mf.refCount());
+    }
+
+    @Test
+    public void testNoReserveAfterRelease() throws Exception {
+        File tmp = File.createTempFile("testNoReserveAfterRelease", ".bin");
+        tmp.deleteOnExit();
+        MappedFile mf = MappedFile.mappedFile(tmp, OS.pageSize(), 0);
+        MappedBytesStore mbs = mf.acquireByteStore(0);
+        mf.close();
+        mbs.release();
+        assertEquals(0, mbs.refCount());
+
+        // concurrent attempts must not see each other's transient increments.
+        AtomicInteger reserved = new AtomicInteger();
+        Runnable tryReserve = () -> {
+            for (int i = 0; i < 1000000; i++)
+                if (mbs.tryReserve())
+                    reserved.incrementAndGet();
+        };
+        Thread t = new Thread(tryReserve);
+        t.start();
+        tryReserve.run();
+        t.join();
+        assertEquals(0, reserved.get());
+        assertEquals(0, mbs.refCount());
+    }
+
+    @Test
+    public void testSync() throws Exception {
+        File tmp = File.createTempFile("testSync", ".bin");
+        tmp.deleteOnExit();
+        int chunkSize = OS.isWindows() ? 64 << 10 : 4 << 10;
+        MappedBytes bytes = MappedBytes.mappedBytes(tmp, chunkSize);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            long position = bytes.position();
+            bytes.writeLong(i);
+            futures.add(bytes.syncAsync(position, 8));
+        }
+        bytes.sync(0, bytes.position());
+        for (CompletableFuture<Void> future : futures)
+            future.get();
+        try {
+            // position + length overflows
+            bytes.syncAsync(1, Long.MAX_VALUE);
+            Assert.fail();
+        } catch (IllegalArgumentException expected) {
+        }
+
+        // requests pending on close are still completed.
+        bytes.writeLong(-1);
+        CompletableFuture<Void> last = bytes.syncAsync(800, 8);
+        bytes.release();
+        last.get();
+        assertEquals(0, bytes.refCount());
+    }
+
+    @Test
+    public void testSyncMappedChunks() throws IOException {
+        File tmp = File.createTempFile("testSyncMappedChunks", ".bin");
+        tmp.deleteOnExit();
+        int chunkSize = OS.isWindows() ? 64 << 10 : 4 << 10;
+        MappedFile mf = MappedFile.mappedFile(tmp, chunkSize, 0);
+        MappedBytesStore mbs0 = mf.acquireByteStore(0);
+        MappedBytesStore mbs1 = mf.acquireByteStore(chunkSize);
+        mbs0.writeLong(chunkSize - 8, 1L);
+        mbs1.writeLong(chunkSize, 2L);
+        // a range across two mapped chunks syncs each of them.
+        mf.sync(chunkSize - 8, 16);
+        assertEquals(2, mf.syncedChunks());
+        // a range of a chunk which isn't mapped forces the whole file.
+        mf.sync(chunkSize * 4, 8);
+        assertEquals(2, mf.syncedChunks());
+        mbs0.release();
+        mbs1.release();
+        mf.close();
+    }
+
+    @Test
+    public void testCloseWaitsForSync() throws Exception {
+        int chunkSize = 4 << 20;
+        for (int run = 0; run < 5; run++) {
+            File tmp = File.createTempFile("testCloseWaitsForSync", ".bin");
+            tmp.deleteOnExit();
+            MappedFile mf = MappedFile.mappedFile(tmp, chunkSize, 0);
+            MappedBytesStore mbs = mf.acquireByteStore(0);
+            // enough dirty pages that the flush is still running when close() is called.
+            for (int i = 0; i < chunkSize; i += 4096)
+                mbs.writeLong(i, i);
+            CompletableFuture<Void> first = mf.syncAsync(0, chunkSize);
+            Thread.sleep(1);
+            mbs.writeLong(0, -1);
+            CompletableFuture<Void> second = mf.syncAsync(0, 8);
+            mbs.release();
+            mf.close();
+            first.get();
+            second.get();
+            assertEquals(0, mf.refCount());
+            tmp.delete();
+        }
+    }
+
+    @Test
+    public void testBulkAcrossChunks() throws IOException {
+        File tmp = File.createTempFile("testBulkAcrossChunks", ".bin");
+        tmp.deleteOnExit();
+        int chunkSize = OS.isWindows() ? 64 << 10 : 4 << 10;
+        MappedBytes bytes = MappedBytes.mappedBytes(tmp, chunkSize);
+        byte[] data = new byte[chunkSize * 5 + 3];
+        for (int i = 0; i < data.length; i++)
+            data[i] = (byte) i;
+        ByteBuffer direct = ByteBuffer.allocateDirect(chunkSize * 3);
+        for (int i = 0; i < direct.capacity(); i++)
+            direct.put(i, (byte) (i * 7));
+
+        bytes.writeByte((byte) 1);
+        bytes.write(data);
+        bytes.write(direct);
+        bytes.write(Bytes.wrap(data));
+        assertEquals(1 + data.length * 2 + direct.capacity(), bytes.position());
+
+        bytes.flip();
+        assertEquals(1, bytes.readByte());
+        byte[] data2 = new byte[data.length];
+        bytes.read(data2);
+        Assert.assertArrayEquals(data, data2);
+        ByteBuffer direct2 = ByteBuffer.allocateDirect(direct.capacity());
+        bytes.read(direct2);
+        direct2.flip();
+        assertEquals(direct, direct2);
+        Arrays.fill(data2, (byte) 0);
+        bytes.read(data2);
+        Assert.assertArrayEquals(data, data2);
+        bytes.release();
+    }
+
+    @Test
+    public void testCopyFromChunkedSource() throws IOException {
+        File tmp = File.createTempFile("testCopyFromChunkedSource", ".bin");
+        tmp.deleteOnExit();
+        File tmp2 = File.createTempFile("testCopyFromChunkedSource", ".bin");
+        tmp2.deleteOnExit();
+        int chunkSize = OS.isWindows() ? 64 << 10 : 4 << 10;
+        byte[] data = new byte[chunkSize * 3 + 5];
+        for (int i = 0; i < data.length; i++)
+            data[i] = (byte) (i * 3);
+        Bytes segmented = SegmentedBytes.segmentedBytes(256);
+        segmented.write(data).flip();
+        MappedBytes mapped = MappedBytes.mappedBytes(tmp2, chunkSize);
+        mapped.write(data).flip();
+
+        for (Bytes source : new Bytes[]{segmented, mapped}) {
+            // start part way into a chunk so the target's chunks don't line up with the source's.
+            MappedBytes target = MappedBytes.mappedBytes(tmp, chunkSize);
+            target.position(100);
+            target.write(source, 0, data.length);
+            long offset = chunkSize * 4 + 123;
+            target.write(offset, source, 0, data.length);
+            byte[] data2 = new byte[data.length];
+            target.position(100);
+            target.read(data2);
+            Assert.assertArrayEquals(data, data2);
+            for (int i = 0; i < data.length; i++)
+                assertEquals(data[i], target.readByte(offset + i));
+            target.release();
+
+            Bytes<byte[]> heap = HeapBytes.heapBytes(data.length);
+            heap.write(source, 0, data.length);
+            heap.flip();
+            Arrays.fill(data2, (byte) 0);
+            heap.read(data2);
+            Assert.assertArrayEquals(data, data2);
+
+            Bytes<ByteBuffer> direct = Bytes.elasticByteBuffer();
+            direct.write((BytesStore) source, 0, data.length);
+            direct.flip();
+            Arrays.fill(data2, (byte) 0);
+            direct.read(data2);
+            Assert.assertArrayEquals(data, data2);
+            direct.release();
+        }
+
+        File tmp3 = File.createTempFile("testCopyFromChunkedSource", ".bin");
+        tmp3.deleteOnExit();
+        MappedFile mf = MappedFile.mappedFile(tmp3, chunkSize);
+        try (MappedAppender appender = mf.appender()) {
+            long position = appender.append(mapped);
+            Bytes bytes = new MappedBytes(mf, false);
+            assertEquals(data.length, bytes.readInt(position));
+            for (int i = 0; i < data.length; i++)
+                assertEquals(data[i], bytes.readByte(position + 4 + i));
+            bytes.release();
+        }
+        mf.close();
+        mapped.release();
+        segmented.release();
+    }
+
+    @Test
+    public void testConcurrentAppend() throws Exception {
+        File tmp = File.createTempFile("testConcurrentAppend", ".bin");
+        tmp.deleteOnExit();
+        int chunkSize = OS.isWindows() ? 64 << 10 : 4 << 10;
+        MappedFile mf = MappedFile.mappedFile(tmp, chunkSize);
+        int threads = 4, records = 2000;
+        ExecutorService es = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                byte id = (byte) ('A' + t);
+                futures.add(es.submit(() -> {
+                    try (MappedAppender appender = mf.appender()) {
+                        for (int i = 0; i < records; i++) {
+                            byte[] data = new byte[1 + i % 300];
+                            Arrays.fill(data, id);
+                            appender.append(data);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get();
+        } finally {
+            es.shutdown();
+        }
+
+        Bytes bytes = new MappedBytes(mf, false);
+        long end = bytes.readLong(0);
+        int[] counts = new int[threads];
+        for (long pos = MappedAppender.DATA_START; pos < end; pos += MappedAppender.recordSize(bytes.readInt(pos))) {
+            int length = bytes.readInt(pos);
+            byte id = bytes.readByte(pos + 4);
+            for (int i = 1; i < length; i++)
+                assertEquals(id, bytes.readByte(pos + 4 + i));
+            counts[id - 'A']++;
+        }
+        for (int count : counts)
+            assertEquals(records, count);
+        bytes.release();
+        mf.close();
+        assertEquals(0, mf.refCount());
+    }
+
+    @Test
+    public void testTailer() throws Exception {
+        File tmp = File.createTempFile("testTailer", ".bin");
+        tmp.deleteOnExit();
+        int chunkSize = OS.isWindows() ? 64 << 10 : 4 << 10;
+        MappedFile mf = MappedFile.mappedFile(tmp, chunkSize);
+        MappedFile readOnly = MappedFile.readOnly(tmp, chunkSize);
+        int records = 5000;
+        ExecutorService es = Executors.newSingleThreadExecutor();
+        try (MappedTailer tailer = readOnly.tailer(WaitStrategies.BACKOFF)) {
+            assertEquals(false, tailer.awaitRecord(10, TimeUnit.MILLISECONDS));
+
+            Future<?> writer = es.submit(() -> {
+                try (MappedAppender appender = mf.appender()) {
+                    for (int i = 0; i < records; i++)
+                        appender.append(("record-" + i).getBytes());
+                }
+                return null;
+            });
+            for (int i = 0; i < records; i++) {
+                Assert.assertTrue(tailer.awaitRecord(10, TimeUnit.SECONDS));
+                assertEquals("record-" + i, tailer.bytes().toString());
+            }
+            writer.get();
+            Assert.assertFalse(tailer.readRecord());
+        } finally {
+            es.shutdown();
+        }
+        readOnly.close();
+        mf.close();
+        assertEquals(0, mf.refCount());
+        assertEquals(0, readOnly.refCount());
+    }
+
+    @Test
+    public void testTransfer() throws IOException {
+        File tmp = File.createTempFile("testTransfer", ".bin");
+        tmp.deleteOnExit();
+        File tmp2 = File.createTempFile("testTransfer2", ".bin");
+        tmp2.deleteOnExit();
+        int chunkSize = OS.isWindows() ? 64 << 10 : 4 << 10;
+        MappedFile mf = MappedFile.mappedFile(tmp, chunkSize);
+        MappedBytes bytes = new MappedBytes(mf, false);
+        for (int i = 0; i < chunkSize; i += 8)
+            bytes.writeLong(i);
+
+        try (FileChannel fc = new RandomAccessFile(tmp2, "rw").getChannel()) {
+            assertEquals(chunkSize - 16, mf.transferTo(8, chunkSize - 16, fc));
+            assertEquals(chunkSize - 16, fc.size());
+            ByteBuffer bb = ByteBuffer.allocate(8).order(ByteOrder.nativeOrder());
+            fc.read(bb, 0);
+            assertEquals(8L, bb.getLong(0));
+
+            // copy it back after the data written.
+            fc.position(0);
+            assertEquals(chunkSize - 16, mf.transferFrom(fc, chunkSize, chunkSize - 16));
+
+            for (long[] range : new long[][]{{-1, 8}, {0, -1}, {8, Long.MAX_VALUE}, {mf.capacity() + 1, 0}}) {
+                try {
+                    mf.transferTo(range[0], range[1], fc);
+                    Assert.fail();
+                } catch (IllegalArgumentException expected) {
+                }
+                try {
+                    mf.transferFrom(fc, range[0], range[1]);
+                    Assert.fail();
+                } catch (IllegalArgumentException expected) {
+                }
+            }
+        }
+        for (int i = 0; i < chunkSize - 16; i += 8)
+            assertEquals(i + 8, bytes.readLong(chunkSize + i));
+        bytes.release();
+        mf.close();
+        assertEquals(0, mf.refCount());
+    }
+
+    @Test
+    public void testBytesPool() throws IOException {
+        File tmp = File.createTempFile("testBytesPool", ".bin");
+        tmp.deleteOnExit();
+        int chunkSize = OS.isWindows() ? 64 << 10 : 4 << 10;
+        MappedFile mf = MappedFile.mappedFile(tmp, chunkSize, 0);
+        MappedBytesPool pool = mf.bytesPool();
+
+        MappedBytes bytes = pool.borrow();
+        bytes.writeLong(chunkSize + 8, 123L);
+        pool.returnBytes(bytes);
+        assertEquals(1, pool.pooled());
+        // the pooled cursor keeps its chunk.
+        assertEquals("refCount: 3, 0, 2", mf.referenceCounts());
+
+        MappedBytes bytes2 = pool.borrow();
+        Assert.assertSame(bytes, bytes2);
+        assertEquals(0, bytes2.position());
+        assertEquals(123L, bytes2.readLong(chunkSize + 8));
+        assertEquals("refCount: 3, 0, 2", mf.referenceCounts());
+        pool.returnBytes(bytes2);
+
+        mf.close();
+        assertEquals(0, mf.refCount());
+    }
+
+    @Test
+    public void testBytesPoolReturnAfterClose() throws IOException {
+        File tmp = File.createTempFile("testBytesPoolReturnAfterClose", ".bin");
+        tmp.deleteOnExit();
+        int chunkSize = OS.isWindows() ? 64 << 10 : 4 << 10;
+        MappedFile mf = MappedFile.mappedFile(tmp, chunkSize, 0);
+        MappedBytesPool pool = mf.bytesPool();
+
+        MappedBytes bytes = pool.borrow();
+        bytes.writeLong(8, 123L);
+        mf.close();
+        // the borrowed cursor still holds the file and its chunk.
+        Assert.assertTrue(mf.refCount() > 0);
+        pool.returnBytes(bytes);
+        assertEquals(0, pool.pooled());
+        assertEquals(0, bytes.refCount());
+        assertEquals(0, mf.refCount());
+    }
+}
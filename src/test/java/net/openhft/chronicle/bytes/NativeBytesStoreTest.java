@@ -21,7 +21,12 @@ package net.openhft.chronicle.bytes;
 import net.openhft.chronicle.core.OS;
 import org.junit.Test;
 
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 import static org.junit.Assert.*;
 
@@ -46,4 +51,228 @@ public class NativeBytesStoreTest {
         assertNotNull(bb2);
         assertNotSame(bb, bb2);
     }
+
+    @Test
+    public void testAlignedNativeStore() {
+        for (long alignment : new long[]{NativeBytesStore.CACHE_LINE_SIZE, NativeBytesStore.PAGE_SIZE, NativeBytesStore.HUGE_PAGE_SIZE}) {
+            NativeBytesStore<Void> store = NativeBytesStore.alignedNativeStore(100, alignment);
+            assertEquals(0, store.address() & (alignment - 1));
+            assertEquals(100, store.capacity());
+            assertEquals(0L, store.readLong(92));
+            store.release();
+        }
+
+        Bytes<Void> bytes = NativeBytesStore.cacheLineAlignedNativeStore(256).bytes();
+        bytes.writeInt(1);
+        bytes.padToAlign(64);
+        assertEquals(64, bytes.position());
+        bytes.padToAlign(64);
+        assertEquals(64, bytes.position());
+        bytes.writeLong(2);
+        assertEquals(0, bytes.accessPositionOffset() & 7);
+        bytes.padToAlign(128);
+        assertEquals(128, bytes.position());
+        bytes.release();
+    }
+
+    @Test
+    public void testThreadConfined() throws InterruptedException {
+        NativeBytesStore<Void> store = NativeBytesStore.nativeStoreWithFixedCapacity(64).threadConfined();
+        assertTrue(store.isThreadConfined());
+        Bytes<Void> bytes = store.bytes();
+        assertTrue(bytes.isThreadConfined());
+        assertEquals(2, store.refCount());
+
+        boolean assertions = false;
+        assert assertions = true;
+        if (assertions) {
+            Throwable[] thrown = {null};
+            Thread t = new Thread(() -> {
+                try {
+                    store.reserve();
+                } catch (IllegalStateException e) {
+                    thrown[0] = e;
+                }
+            });
+            t.start();
+            t.join();
+            assertNotNull(thrown[0]);
+        }
+
+        bytes.release();
+        assertEquals(1, store.refCount());
+        store.release();
+        assertEquals(0, store.refCount());
+        try {
+            store.release();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void testThreadConfinedIgnoredForSharedStores() throws IOException {
+        File tmp = File.createTempFile("testThreadConfinedIgnoredForSharedStores", ".bin");
+        tmp.deleteOnExit();
+        MappedFile mf = MappedFile.mappedFile(tmp, OS.pageSize(), 0);
+        MappedBytesStore mbs = mf.acquireByteStore(0);
+        assertSame(mbs, mbs.threadConfined());
+        assertFalse(mbs.isThreadConfined());
+        mbs.release();
+        mf.close();
+
+        BytesStore expected = new ExpectedBytesStore<>(BytesStore.wrap(new byte[8]));
+        assertSame(expected, expected.threadConfined());
+        assertFalse(expected.isThreadConfined());
+    }
+
+    @Test
+    public void testOffHeapAccounting() throws Exception {
+        OffHeapAccounting accounting = OffHeapAccounting.instance();
+        long allocated = accounting.getNativeBytesAllocated();
+        long freed = accounting.getNativeBytesFreed();
+        long directAllocated = accounting.getDirectBufferBytesAllocated();
+
+        accounting.setTracking(true);
+        try {
+            NativeBytesStore<Void> store = NativeBytesStore.nativeStoreWithFixedCapacity(1000);
+            NativeBytesStore<ByteBuffer> buffer = NativeBytesStore.elasticByteBuffer(2000);
+            assertEquals(allocated + 1000, accounting.getNativeBytesAllocated());
+            assertEquals(directAllocated + 2000, accounting.getDirectBufferBytesAllocated());
+            assertEquals(2, accounting.getTrackedStores());
+            String dump = accounting.dumpTrackedStores();
+            assertTrue(dump, dump.contains("NATIVE NativeBytesStore of 1000 bytes"));
+            assertTrue(dump, dump.contains("testOffHeapAccounting"));
+
+            store.release();
+            buffer.release();
+            assertEquals(freed + 1000, accounting.getNativeBytesFreed());
+            assertEquals(0, accounting.getTrackedStores());
+        } finally {
+            accounting.setTracking(false);
+        }
+
+        OffHeapAccounting.registerMBean();
+        Object tracking = ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(new ObjectName(OffHeapAccounting.OBJECT_NAME), "Tracking");
+        assertEquals(false, tracking);
+    }
+
+    @Test
+    public void testWrappedBufferNotFreedByCollection() throws InterruptedException {
+        OffHeapAccounting accounting = OffHeapAccounting.instance();
+        long directFreed = accounting.getDirectBufferBytesFreed();
+        int size = 4 << 20;
+        ByteBuffer bb = ByteBuffer.allocateDirect(size);
+        Bytes<ByteBuffer> bytes = Bytes.wrap(bb);
+        bytes.writeLong(0, 12345L);
+        bytes = null;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        // the buffer is still reachable so its memory is still in use, other buffers may have been collected.
+        assertTrue(accounting.getDirectBufferBytesFreed() - directFreed < size);
+        bb.putLong(8, 1L);
+        assertEquals(12345L, bb.order(ByteOrder.nativeOrder()).getLong(0));
+
+        directFreed = accounting.getDirectBufferBytesFreed();
+        NativeBytesStore<ByteBuffer> store = NativeBytesStore.elasticByteBuffer(1000);
+        store.release();
+        assertTrue(accounting.getDirectBufferBytesFreed() - directFreed >= 1000);
+    }
+
+    @Test
+    public void testWrappingABufferIsNotAnAllocation() {
+        OffHeapAccounting accounting = OffHeapAccounting.instance();
+        long directAllocated = accounting.getDirectBufferBytesAllocated();
+        ByteBuffer bb = ByteBuffer.allocateDirect(1000);
+        for (int i = 0; i < 10; i++) {
+            Bytes<ByteBuffer> bytes = Bytes.wrap(bb);
+            bytes.writeInt(0, i);
+        }
+        assertEquals(directAllocated, accounting.getDirectBufferBytesAllocated());
+
+        NativeBytesStore<ByteBuffer> copy = (NativeBytesStore<ByteBuffer>) NativeBytesStore.wrap(bb).copy();
+        assertEquals(directAllocated + 1000, accounting.getDirectBufferBytesAllocated());
+        assertEquals(9, copy.readInt(0));
+        copy.release();
+    }
+
+    @Test
+    public void testCopyBetweenAccesses() {
+        int len = 1001;
+        byte[] array = new byte[len + 8];
+        for (int i = 0; i < len; i++)
+            array[i + 3] = (byte) (i * 7);
+        long address = NativeBytesStore.nativeStoreWithFixedCapacity(len).address();
+        NativeBytesStore<Void> store = NativeBytesStore.nativeStoreWithFixedCapacity(len);
+        ByteBuffer heap = ByteBuffer.allocate(len);
+        ByteBuffer direct = ByteBuffer.allocateDirect(len).order(ByteOrder.LITTLE_ENDIAN);
+
+        Access<Object> nativeAccess = NativeAccess.instance();
+        Access<ByteBuffer> bbAccess = Access.checkedByteBufferAccess();
+        Access.copy(nativeAccess, array, ArrayAccessors.BYTE_BASE + 3, nativeAccess, null, store.address(), len);
+        // byte order doesn't change the bytes copied.
+        Access.copy(nativeAccess, null, store.address(), bbAccess, heap, 0, len);
+        Access.copy(bbAccess, heap, 0, bbAccess, direct, 0, len);
+        Access.copy(bbAccess, direct, 0, nativeAccess, null, address, len);
+        Access.copy(bbAccess, heap.asReadOnlyBuffer(), 0, nativeAccess, array, ArrayAccessors.BYTE_BASE, len);
+        for (int i = 0; i < len; i++) {
+            byte b = (byte) (i * 7);
+            assertEquals(b, store.readByte(i));
+            assertEquals(b, heap.get(i));
+            assertEquals(b, direct.get(i));
+            assertEquals(b, NativeAccess.U.getByte(address + i));
+            assertEquals(b, array[i]);
+        }
+
+        bbAccess.writeBytes(direct, 1, len - 2, (byte) 9);
+        bbAccess.zeroOut(heap, 0, len);
+        assertEquals(0, direct.get(0));
+        assertEquals(9, direct.get(1));
+        assertEquals(9, direct.get(len - 2));
+        assertEquals((byte) ((len - 1) * 7), direct.get(len - 1));
+        assertEquals(0, heap.get(len - 1));
+        try {
+            Access.copy(nativeAccess, array, ArrayAccessors.BYTE_BASE, bbAccess, heap, 1, len);
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+        }
+        store.release();
+        NativeAccess.U.freeMemory(address);
+    }
+
+    @Test
+    public void compareCopyRates() {
+        for (int len : new int[]{16, 256, 4 << 10, 1 << 20}) {
+            byte[] array = new byte[len];
+            NativeBytesStore<Void> store = NativeBytesStore.nativeStoreWithFixedCapacity(len);
+            ByteBuffer direct = ByteBuffer.allocateDirect(len);
+            ByteBuffer readOnly = ByteBuffer.allocate(len).asReadOnlyBuffer();
+            Access<Object> nativeAccess = NativeAccess.instance();
+            Access<ByteBuffer> bbAccess = Access.checkedByteBufferAccess();
+            int runs = Math.max(10, (64 << 20) / len);
+            for (int t = 0; t < 3; t++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < runs; i++)
+                    Access.copy(nativeAccess, array, ArrayAccessors.BYTE_BASE, nativeAccess, null, store.address(), len);
+                long arrayToNative = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                for (int i = 0; i < runs; i++)
+                    Access.copy(nativeAccess, null, store.address(), bbAccess, direct, 0, len);
+                long nativeToBuffer = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                for (int i = 0; i < runs; i++)
+                    Access.copy(bbAccess, readOnly, 0, nativeAccess, null, store.address(), len);
+                long generic = System.nanoTime() - start;
+
+                System.out.printf("copy of %,d bytes took an average of %,d ns for byte[] to native, %,d ns for native to ByteBuffer and %,d ns for a read only ByteBuffer%n",
+                        len, arrayToNative / runs, nativeToBuffer / runs, generic / runs);
+            }
+            store.release();
+        }
+    }
 }
@@ -1,8 +1,12 @@
 package net.openhft.chronicle.bytes;
 
+import net.openhft.chronicle.core.OS;
 import org.junit.Test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Created by daniel on 17/04/15.
@@ -27,4 +31,88 @@ public class NativeBytesTest {
         bytes1.flip();
         assertEquals("Hello", bytes1.toString());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSegmentedBytesGrowWithoutCopying() {
+        SegmentedBytes bytes = SegmentedBytes.segmentedBytes(64);
+        // 8 byte values which straddle the end of each segment.
+        bytes.writeByte((byte) 1);
+        long address = bytes.address();
+        for (int i = 0; i < 100; i++)
+            bytes.writeLong(i * 0x0101010101010101L);
+        assertEquals(13, bytes.segmentCount());
+
+        bytes.writeDouble(1.5);
+        bytes.writeInt(-123456);
+        bytes.writeShort((short) -2);
+        bytes.flip();
+        assertEquals(1, bytes.readByte());
+        for (int i = 0; i < 100; i++)
+            assertEquals(i * 0x0101010101010101L, bytes.readLong());
+        assertEquals(1.5, bytes.readDouble(), 0.0);
+        assertEquals(-123456, bytes.readInt());
+        assertEquals(-2, bytes.readShort());
+        assertEquals(0, bytes.remaining());
+
+        // the first segment has not moved.
+        bytes.readLong(0);
+        assertEquals(address, bytes.address());
+        bytes.release();
+        assertEquals(0, bytes.segmentCount());
+    }
+
+    @Test
+    public void testSegmentedBytesBulk() {
+        SegmentedBytes bytes = SegmentedBytes.segmentedBytes(64);
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++)
+            data[i] = (byte) i;
+        bytes.writeByte((byte) 7);
+        bytes.write(data);
+        bytes.flip();
+
+        Bytes copy = (Bytes) bytes.copy();
+        assertEquals(bytes, copy);
+        assertEquals(1001, copy.remaining());
+
+        assertEquals(7, bytes.readByte());
+        byte[] data2 = new byte[1000];
+        bytes.read(data2);
+        assertArrayEquals(data, data2);
+        bytes.release();
+    }
+
+    @Test
+    public void testSpillingBytes() {
+        SpillingBytes bytes = SpillingBytes.spillingBytes(16 << 10, 64 << 10);
+        for (int i = 0; i < 1000; i++)
+            bytes.writeLong(i);
+        assertFalse(bytes.isSpilled());
+
+        for (int i = 1000; i < 100_000; i++)
+            bytes.writeLong(i);
+        assertTrue(bytes.isSpilled());
+        assertTrue(bytes.file().exists());
+
+        bytes.flip();
+        for (int i = 0; i < 100_000; i++)
+            assertEquals(i, bytes.readLong());
+
+        bytes.release();
+        assertFalse(bytes.file().exists());
+    }
+
+    @Test
+    public void testSpillingBytesGrowsByWholePages() {
+        int ps = OS.pageSize();
+        SpillingBytes bytes = SpillingBytes.spillingBytes(1 << 20, 64 << 10);
+        bytes.writeByte((byte) 1);
+        assertEquals(ps, bytes.realCapacity());
+        bytes.write(new byte[ps]);
+        assertEquals(ps * 2, bytes.realCapacity());
+        // 50% more is already a whole number of pages.
+        bytes.write(new byte[ps]);
+        assertEquals(ps * 3, bytes.realCapacity());
+        bytes.release();
+    }
+}